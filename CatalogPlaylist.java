@@ -0,0 +1,167 @@
+// CatalogPlaylist.java
+
+// A playlist of song ids from a SongCatalog.
+//
+// Entries are kept in one int array, 4 bytes each, so thousands of playlists
+// over the same catalog cost little more than their lengths. Positions are
+// direct array indexes; inserting or removing shifts the later ids with a
+// single array copy. Use toPlaylist() to get a full Playlist for the GUI or
+// for saving.
+public class CatalogPlaylist {
+    private final SongCatalog catalog;
+    private final IntList songIds = new IntList();
+    private String name;
+    private int current = -1;
+
+    public CatalogPlaylist(SongCatalog catalog, String name) {
+        this.catalog = catalog;
+        this.name = name;
+    }
+
+    // Add song to the end of playlist
+    public void addSong(int songId) {
+        catalog.getDuration(songId); // rejects unknown ids
+        songIds.add(songId);
+        if (current == -1) {
+            current = 0; // Set as current if it's the first song
+        }
+    }
+
+    // Add song at specific position (0-based index)
+    public boolean addSongAt(int songId, int position) {
+        if (position < 0 || position > songIds.size()) {
+            return false;
+        }
+        catalog.getDuration(songId);
+        songIds.add(position, songId);
+        if (current == -1) {
+            current = 0;
+        } else if (position <= current) {
+            current++;
+        }
+        return true;
+    }
+
+    // Remove song by position
+    public boolean removeSong(int position) {
+        if (position < 0 || position >= songIds.size()) {
+            return false;
+        }
+        songIds.removeAt(position);
+        if (position < current) {
+            current--;
+        } else if (position == current && current == songIds.size()) {
+            // Removed the current song at the end: continue from the start
+            current = songIds.isEmpty() ? -1 : 0;
+        }
+        return true;
+    }
+
+    // Move song up in the playlist
+    public boolean moveSongUp(int position) {
+        if (position <= 0 || position >= songIds.size()) {
+            return false;
+        }
+        songIds.swap(position, position - 1);
+        if (current == position) {
+            current--;
+        } else if (current == position - 1) {
+            current++;
+        }
+        return true;
+    }
+
+    // Move song down in the playlist
+    public boolean moveSongDown(int position) {
+        if (position < 0 || position >= songIds.size() - 1) {
+            return false;
+        }
+        return moveSongUp(position + 1);
+    }
+
+    // Id of the song at position, or -1
+    public int getSongId(int position) {
+        if (position < 0 || position >= songIds.size()) {
+            return -1;
+        }
+        return songIds.get(position);
+    }
+
+    // Get song at position
+    public Song getSong(int position) {
+        int id = getSongId(position);
+        return id != -1 ? catalog.getSong(id) : null;
+    }
+
+    // Navigation methods
+    public Song getCurrentSong() {
+        return getSong(current);
+    }
+
+    public Song jumpTo(int position) {
+        if (position < 0 || position >= songIds.size()) {
+            return null;
+        }
+        current = position;
+        return getCurrentSong();
+    }
+
+    public Song nextSong() {
+        if (songIds.isEmpty()) {
+            return null;
+        }
+        // If at the end, loop back to beginning
+        current = current + 1 < songIds.size() ? current + 1 : 0;
+        return getCurrentSong();
+    }
+
+    public Song previousSong() {
+        if (songIds.isEmpty()) {
+            return null;
+        }
+        // If at the beginning, loop to end
+        current = current > 0 ? current - 1 : songIds.size() - 1;
+        return getCurrentSong();
+    }
+
+    // Total duration of playlist in seconds
+    public long getTotalDuration() {
+        long total = 0;
+        for (int i = 0; i < songIds.size(); i++) {
+            total += catalog.getDuration(songIds.get(i));
+        }
+        return total;
+    }
+
+    // Full Playlist with the same songs (as catalog views) and current song
+    public Playlist toPlaylist() {
+        Playlist playlist = new Playlist(name);
+        for (int i = 0; i < songIds.size(); i++) {
+            playlist.addSong(catalog.getSong(songIds.get(i)));
+        }
+        playlist.jumpTo(current);
+        return playlist;
+    }
+
+    // Getters
+    public SongCatalog getCatalog() {
+        return catalog;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSize() {
+        return songIds.size();
+    }
+
+    public int getCurrentIndex() {
+        return current;
+    }
+
+    // Setters
+    public void setName(String name) {
+        this.name = name;
+    }
+}
@@ -0,0 +1,85 @@
+// CatalogSong.java
+
+// A Song whose fields live in a SongCatalog.
+// Views are created on demand and hold nothing but the catalog and the id;
+// setters write through to the catalog. Any write to the song, through this
+// view, another view of the same id or the catalog itself, is reported to
+// the listeners of every view of it (see CatalogViews).
+public class CatalogSong extends Song {
+    private final SongCatalog catalog;
+    private final CatalogViews views;
+    private final int id;
+
+    CatalogSong(SongCatalog catalog, CatalogViews views, int id) {
+        super(null, null, null, 0);
+        this.catalog = catalog;
+        this.views = views;
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    // Getters
+    @Override
+    public String getTitle() {
+        return catalog.getTitle(id);
+    }
+
+    @Override
+    public String getArtist() {
+        return catalog.getArtist(id);
+    }
+
+    @Override
+    public String getAlbum() {
+        return catalog.getAlbum(id);
+    }
+
+    @Override
+    public int getDuration() {
+        return catalog.getDuration(id);
+    }
+
+    // Listeners - registered with the catalog while there are any, so that
+    // edits made through other views of the same id reach them too
+    @Override
+    public void addSongListener(SongListener listener) {
+        boolean first = !hasSongListeners();
+        super.addSongListener(listener);
+        if (first) {
+            views.startListening(this);
+        }
+    }
+
+    @Override
+    public void removeSongListener(SongListener listener) {
+        boolean listening = hasSongListeners();
+        super.removeSongListener(listener);
+        if (listening && !hasSongListeners()) {
+            views.stopListening(this);
+        }
+    }
+
+    // Setters - the catalog notifies the listeners of every view of this id
+    @Override
+    public void setTitle(String title) {
+        catalog.setTitle(id, title);
+    }
+
+    @Override
+    public void setArtist(String artist) {
+        catalog.setArtist(id, artist);
+    }
+
+    @Override
+    public void setAlbum(String album) {
+        catalog.setAlbum(id, album);
+    }
+
+    @Override
+    public void setDuration(int duration) {
+        catalog.setDuration(id, duration);
+    }
+}
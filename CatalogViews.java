@@ -0,0 +1,101 @@
+// CatalogViews.java
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// The CatalogSong views of one catalog that have listeners, by song id.
+//
+// getSong hands out a new view each time, so two playlists holding the same
+// song usually hold different views. Every write to the catalog - through
+// any view or a setter of the catalog itself - goes through write(), which
+// notifies the listeners of all views of that id. Views without listeners
+// are not tracked, so reading songs costs nothing extra. Views are held
+// weakly: a playlist dropped without removing its songs does not keep them.
+class CatalogViews {
+    private final Map<Integer, List<ViewReference>> listening = new HashMap<>();
+    private final ReferenceQueue<CatalogSong> cleared = new ReferenceQueue<>();
+
+    private static final class ViewReference extends WeakReference<CatalogSong> {
+        final int id;
+
+        ViewReference(CatalogSong view, ReferenceQueue<CatalogSong> queue) {
+            super(view, queue);
+            this.id = view.getId();
+        }
+    }
+
+    // Called by a view when its first listener is added
+    synchronized void startListening(CatalogSong view) {
+        purge();
+        List<ViewReference> views = listening.get(view.getId());
+        if (views == null) {
+            views = new ArrayList<>(1);
+            listening.put(view.getId(), views);
+        }
+        views.add(new ViewReference(view, cleared));
+    }
+
+    // Called by a view when its last listener is removed
+    synchronized void stopListening(CatalogSong view) {
+        purge();
+        List<ViewReference> views = listening.get(view.getId());
+        if (views == null) {
+            return;
+        }
+        for (Iterator<ViewReference> it = views.iterator(); it.hasNext(); ) {
+            if (it.next().get() == view) {
+                it.remove();
+            }
+        }
+        if (views.isEmpty()) {
+            listening.remove(view.getId());
+        }
+    }
+
+    // Run a write to song id and report it to the listeners of every view of it
+    void write(SongCatalog catalog, int id, Runnable write) {
+        CatalogSong[] views = listeningTo(id);
+        if (views == null) {
+            write.run();
+            return;
+        }
+        String oldTitle = catalog.getTitle(id);
+        String oldArtist = catalog.getArtist(id);
+        String oldAlbum = catalog.getAlbum(id);
+        int oldDuration = catalog.getDuration(id);
+        write.run();
+        for (CatalogSong view : views) {
+            view.fireSongChanged(oldTitle, oldArtist, oldAlbum, oldDuration);
+        }
+    }
+
+    private synchronized CatalogSong[] listeningTo(int id) {
+        purge();
+        List<ViewReference> views = listening.get(id);
+        if (views == null) {
+            return null;
+        }
+        List<CatalogSong> live = new ArrayList<>(views.size());
+        for (ViewReference reference : views) {
+            CatalogSong view = reference.get();
+            if (view != null) {
+                live.add(view);
+            }
+        }
+        return live.toArray(new CatalogSong[0]);
+    }
+
+    // Forget views that were garbage collected while they still had listeners
+    private void purge() {
+        for (ViewReference reference; (reference = (ViewReference) cleared.poll()) != null; ) {
+            List<ViewReference> views = listening.get(reference.id);
+            if (views != null && views.remove(reference) && views.isEmpty()) {
+                listening.remove(reference.id);
+            }
+        }
+    }
+}
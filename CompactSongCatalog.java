@@ -0,0 +1,119 @@
+// CompactSongCatalog.java
+import java.util.Arrays;
+
+// Song library stored as parallel int arrays ("struct of arrays").
+//
+// A song is just an id: its title, artist and album are ids into one shared
+// StringTable and its duration is a plain int, so an entry costs 16 bytes
+// plus whatever strings it introduces. Repeated artists and albums are stored
+// once. getSong returns a CatalogSong, a small view that reads and writes
+// these arrays, for code that works with Song objects; CatalogPlaylist keeps
+// playlists as lists of song ids so they never hold Song objects at all.
+public class CompactSongCatalog implements SongCatalog {
+    private final StringTable strings = new StringTable();
+    private int[] titles;
+    private int[] artists;
+    private int[] albums;
+    private int[] durations;
+    private int size;
+    private final CatalogViews views = new CatalogViews();
+
+    public CompactSongCatalog() {
+        this(1024);
+    }
+
+    public CompactSongCatalog(int expectedSongs) {
+        int capacity = Math.max(16, expectedSongs);
+        titles = new int[capacity];
+        artists = new int[capacity];
+        albums = new int[capacity];
+        durations = new int[capacity];
+    }
+
+    @Override
+    public int add(String title, String artist, String album, int duration) {
+        if (size == titles.length) {
+            int capacity = size * 2;
+            titles = Arrays.copyOf(titles, capacity);
+            artists = Arrays.copyOf(artists, capacity);
+            albums = Arrays.copyOf(albums, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+        }
+        titles[size] = strings.intern(title);
+        artists[size] = strings.intern(artist);
+        albums[size] = strings.intern(album);
+        durations[size] = duration;
+        return size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // Number of distinct strings stored for all songs
+    public int getStringCount() {
+        return strings.size();
+    }
+
+    @Override
+    public CatalogSong getSong(int id) {
+        checkId(id);
+        return new CatalogSong(this, views, id);
+    }
+
+    // Field access by song id
+    @Override
+    public String getTitle(int id) {
+        checkId(id);
+        return strings.get(titles[id]);
+    }
+
+    @Override
+    public String getArtist(int id) {
+        checkId(id);
+        return strings.get(artists[id]);
+    }
+
+    @Override
+    public String getAlbum(int id) {
+        checkId(id);
+        return strings.get(albums[id]);
+    }
+
+    @Override
+    public int getDuration(int id) {
+        checkId(id);
+        return durations[id];
+    }
+
+    @Override
+    public void setTitle(int id, String title) {
+        checkId(id);
+        views.write(this, id, () -> titles[id] = strings.intern(title));
+    }
+
+    @Override
+    public void setArtist(int id, String artist) {
+        checkId(id);
+        views.write(this, id, () -> artists[id] = strings.intern(artist));
+    }
+
+    @Override
+    public void setAlbum(int id, String album) {
+        checkId(id);
+        views.write(this, id, () -> albums[id] = strings.intern(album));
+    }
+
+    @Override
+    public void setDuration(int id, int duration) {
+        checkId(id);
+        views.write(this, id, () -> durations[id] = duration);
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Song id " + id + ", catalog size " + size);
+        }
+    }
+}
@@ -0,0 +1,303 @@
+// ConcurrentPlaylist.java
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+// Thread-safe front for a Playlist shared by many sessions and editor threads.
+//
+// Positional reads (getSong, getSize, getCurrentSong...) share a read lock, so
+// any number of them run in parallel; edits and navigation take the write lock
+// for the O(log n) time the underlying index needs. Whole-list readers (saving,
+// rendering, reporting) should use snapshot(): it returns an immutable version
+// that shares its structure with the live playlist, so taking one is O(1) and
+// iterating it never blocks or is blocked by writers.
+//
+// Songs handed out are the live Song objects. Edit them only inside write(...)
+// so their setters run under the lock.
+public class ConcurrentPlaylist implements Iterable<Song> {
+    private final Playlist playlist;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock readLock = lock.readLock();
+    private final Lock writeLock = lock.writeLock();
+
+    public ConcurrentPlaylist(String name) {
+        this(new Playlist(name));
+    }
+
+    // Wrap an existing playlist; it must not be used directly afterwards
+    public ConcurrentPlaylist(Playlist playlist) {
+        this.playlist = playlist;
+        // Build the node chain and the persistent version now; lazy loading is not thread-safe
+        playlist.snapshot();
+    }
+
+    // Edits
+    public void addSong(Song song) {
+        writeLock.lock();
+        try {
+            playlist.addSong(song);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void addSongToBeginning(Song song) {
+        writeLock.lock();
+        try {
+            playlist.addSongToBeginning(song);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public boolean addSongAt(Song song, int position) {
+        writeLock.lock();
+        try {
+            return playlist.addSongAt(song, position);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public boolean removeSong(int position) {
+        writeLock.lock();
+        try {
+            return playlist.removeSong(position);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public boolean removeSong(String title, String artist) {
+        writeLock.lock();
+        try {
+            return playlist.removeSong(title, artist);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public boolean moveSongUp(int position) {
+        writeLock.lock();
+        try {
+            return playlist.moveSongUp(position);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public boolean moveSongDown(int position) {
+        writeLock.lock();
+        try {
+            return playlist.moveSongDown(position);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void shuffle(long seed) {
+        writeLock.lock();
+        try {
+            playlist.shuffle(seed);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Navigation changes the current song, so it is a write too
+    public Song nextSong() {
+        writeLock.lock();
+        try {
+            return playlist.nextSong();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public Song previousSong() {
+        writeLock.lock();
+        try {
+            return playlist.previousSong();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public Song jumpTo(int position) {
+        writeLock.lock();
+        try {
+            return playlist.jumpTo(position);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // The title/artist index is built on first use, so lookups take the write lock
+    public Song findSong(String title, String artist) {
+        writeLock.lock();
+        try {
+            return playlist.findSong(title, artist);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Reads
+    public Song getSong(int position) {
+        readLock.lock();
+        try {
+            return playlist.getSong(position);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public int getSize() {
+        readLock.lock();
+        try {
+            return playlist.getSize();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public Song getCurrentSong() {
+        readLock.lock();
+        try {
+            return playlist.getCurrentSong();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public int getCurrentIndex() {
+        readLock.lock();
+        try {
+            return playlist.getCurrentIndex();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public int getTotalDuration() {
+        readLock.lock();
+        try {
+            return playlist.getTotalDuration();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public int getPositionAt(long elapsed) {
+        readLock.lock();
+        try {
+            return playlist.getPositionAt(elapsed);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public long getElapsedTime(int position) {
+        readLock.lock();
+        try {
+            return playlist.getElapsedTime(position);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public long getRemainingTime() {
+        readLock.lock();
+        try {
+            return playlist.getRemainingTime();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public long jumpToTime(long elapsed) {
+        writeLock.lock();
+        try {
+            return playlist.jumpToTime(elapsed);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // A playback position for one session. The cursor reads under the read lock,
+    // so sessions move in parallel and never block each other.
+    public PlayCursor newCursor() {
+        readLock.lock();
+        try {
+            return new PlayCursor(playlist, playlist.getCurrentNode(), readLock);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Typed change events (see PlaylistEventPublisher). Events are published
+    // under the write lock and delivered on the publisher's executor, so
+    // subscribers never hold up writers.
+    public PlaylistEventPublisher getEventPublisher() {
+        writeLock.lock();
+        try {
+            return playlist.getEventPublisher();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Immutable view of the songs in order (see PlaylistSnapshot). Taking one is
+    // O(1) under the read lock; reading it afterwards needs no locking at all.
+    public PlaylistSnapshot snapshot() {
+        readLock.lock();
+        try {
+            return playlist.snapshot();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Iterates a snapshot, so it never sees a half-applied edit
+    @Override
+    public Iterator<Song> iterator() {
+        return snapshot().iterator();
+    }
+
+    @Override
+    public Spliterator<Song> spliterator() {
+        return snapshot().spliterator();
+    }
+
+    // Streams over a snapshot, so a long (parallel) pass never holds the lock
+    public Stream<Song> stream() {
+        return snapshot().stream();
+    }
+
+    public Stream<Song> parallelStream() {
+        return snapshot().parallelStream();
+    }
+
+    // Run several reads against one consistent state
+    public <T> T read(Function<Playlist, T> action) {
+        readLock.lock();
+        try {
+            return action.apply(playlist);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Run a compound edit (or song setters) atomically
+    public <T> T write(Function<Playlist, T> action) {
+        writeLock.lock();
+        try {
+            return action.apply(playlist);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
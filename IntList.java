@@ -0,0 +1,84 @@
+// IntList.java
+import java.util.Arrays;
+
+// Growable list of primitive ints, without boxing each element
+class IntList {
+    private int[] values;
+    private int size;
+
+    IntList() {
+        this(16);
+    }
+
+    IntList(int capacity) {
+        values = new int[Math.max(1, capacity)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int get(int index) {
+        checkIndex(index, size);
+        return values[index];
+    }
+
+    void set(int index, int value) {
+        checkIndex(index, size);
+        values[index] = value;
+    }
+
+    void add(int value) {
+        ensureCapacity(size + 1);
+        values[size++] = value;
+    }
+
+    // Shift later elements up by one; O(n) but a single memory move
+    void add(int index, int value) {
+        checkIndex(index, size + 1);
+        ensureCapacity(size + 1);
+        System.arraycopy(values, index, values, index + 1, size - index);
+        values[index] = value;
+        size++;
+    }
+
+    int removeAt(int index) {
+        checkIndex(index, size);
+        int value = values[index];
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        return value;
+    }
+
+    void swap(int i, int j) {
+        checkIndex(i, size);
+        checkIndex(j, size);
+        int temp = values[i];
+        values[i] = values[j];
+        values[j] = temp;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > values.length) {
+            values = Arrays.copyOf(values, Math.max(capacity, values.length * 2));
+        }
+    }
+
+    private static void checkIndex(int index, int limit) {
+        if (index < 0 || index >= limit) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + limit);
+        }
+    }
+}
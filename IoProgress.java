@@ -0,0 +1,6 @@
+// IoProgress.java
+// Progress callback for long playlist reads and writes. Called from the
+// thread doing the I/O every few thousand songs.
+public interface IoProgress {
+    void update(long done, long total);
+}
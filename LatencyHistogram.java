@@ -0,0 +1,100 @@
+// LatencyHistogram.java
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Histogram of latencies in nanoseconds with fixed, log-linear buckets.
+//
+// Every power of two is split into 16 equal buckets, so a recorded value is
+// known to within 1/16 (6.25%) at any magnitude, from nanoseconds to hours,
+// in 976 counters of constant size. Values below 16 get a bucket each.
+// Recording is lock-free and safe from any thread; readers see a consistent
+// enough picture for monitoring without stopping writers.
+class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0; // clock went backwards
+        }
+        counts.incrementAndGet(bucket(nanos));
+        count.increment();
+        total.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    long getTotal() {
+        return total.sum();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    // Latencies at each of the given percentiles (0-100), in one pass over the buckets
+    long[] percentiles(double... percentiles) {
+        long[] snapshot = new long[BUCKETS];
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            seen += snapshot[i];
+        }
+
+        long[] values = new long[percentiles.length];
+        if (seen == 0) {
+            return values;
+        }
+        long highest = getMax();
+        for (int p = 0; p < percentiles.length; p++) {
+            long rank = Math.max(1, (long) Math.ceil(percentiles[p] / 100.0 * seen));
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                cumulative += snapshot[i];
+                if (cumulative >= rank) {
+                    values[p] = Math.min(highestIn(i), highest);
+                    break;
+                }
+            }
+        }
+        return values;
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        total.reset();
+        max.reset();
+    }
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BITS
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Largest value that falls into bucket
+    private static long highestIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
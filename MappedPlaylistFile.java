@@ -0,0 +1,158 @@
+// MappedPlaylistFile.java
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+// Read-only, memory-mapped view of a binary playlist file (see PlaylistFile).
+// Opening only parses the header and records where each dictionary string
+// starts; songs are decoded one at a time when they are asked for.
+public class MappedPlaylistFile {
+    private final MappedByteBuffer buffer;
+    private final String name;
+    private final int songCount;
+    private final int currentPosition;
+    private final int[] stringOffsets;
+    private final int recordsOffset;
+
+    // Artists and albums repeat a lot, so decode each of them only once
+    private final Map<Integer, String> sharedStrings = new HashMap<>();
+
+    private MappedPlaylistFile(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        ByteBuffer in = buffer.duplicate();
+
+        try {
+            if (in.getInt() != PlaylistFile.MAGIC) {
+                throw new IOException("Not a binary playlist file");
+            }
+            short version = in.getShort();
+            if (version != PlaylistFile.VERSION) {
+                throw new IOException("Unsupported playlist file version " + version);
+            }
+
+            int nameOffset = in.position();
+            skipString(in);
+            name = decode(nameOffset);
+            songCount = in.getInt();
+            currentPosition = in.getInt();
+
+            // Offset index over the string dictionary
+            stringOffsets = new int[in.getInt()];
+            for (int i = 0; i < stringOffsets.length; i++) {
+                stringOffsets[i] = in.position();
+                skipString(in);
+            }
+
+            recordsOffset = in.position();
+            if (songCount < 0 || (long) songCount * PlaylistFile.RECORD_SIZE > in.remaining()) {
+                throw new IOException("Truncated playlist file");
+            }
+        } catch (RuntimeException e) {
+            // BufferUnderflowException, IllegalArgumentException from a corrupt length
+            throw new IOException("Corrupt playlist file", e);
+        }
+    }
+
+    public static MappedPlaylistFile open(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Playlist file too large to map: " + filename);
+            }
+            // The mapping stays valid after the channel is closed
+            return new MappedPlaylistFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // Getters
+    public String getName() {
+        return name;
+    }
+
+    public int getSongCount() {
+        return songCount;
+    }
+
+    public int getCurrentPosition() {
+        return currentPosition;
+    }
+
+    // Decode the song stored at position
+    public Song readSong(int position) {
+        int record = recordOffset(position);
+        String title = string(buffer.getInt(record));
+        String artist = sharedString(buffer.getInt(record + 4));
+        String album = sharedString(buffer.getInt(record + 8));
+        return Song.withInternedNames(title, artist, album, buffer.getInt(record + 12));
+    }
+
+    public String readTitle(int position) {
+        return string(buffer.getInt(recordOffset(position)));
+    }
+
+    public String readArtist(int position) {
+        return sharedString(buffer.getInt(recordOffset(position) + 4));
+    }
+
+    public String readAlbum(int position) {
+        return sharedString(buffer.getInt(recordOffset(position) + 8));
+    }
+
+    public int readDuration(int position) {
+        return buffer.getInt(recordOffset(position) + 12);
+    }
+
+    private int recordOffset(int position) {
+        if (position < 0 || position >= songCount) {
+            throw new IndexOutOfBoundsException("Position " + position + ", size " + songCount);
+        }
+        return recordsOffset + position * PlaylistFile.RECORD_SIZE;
+    }
+
+    private synchronized String sharedString(int id) {
+        if (id == -1) {
+            return null;
+        }
+        String value = sharedStrings.get(id);
+        if (value == null) {
+            value = StringInterner.intern(string(id));
+            sharedStrings.put(id, value);
+        }
+        return value;
+    }
+
+    private String string(int id) {
+        if (id == -1) {
+            return null;
+        }
+        return decode(stringOffsets[id]);
+    }
+
+    // Decode the length-prefixed string at offset, using absolute reads only
+    // so concurrent readers do not disturb each other
+    private String decode(int offset) {
+        int length = buffer.getInt(offset);
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + 4);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void skipString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length > 0) {
+            in.position(in.position() + length);
+        } else if (length != -1 && length != 0) {
+            throw new IllegalArgumentException("Bad string length " + length);
+        }
+    }
+}
@@ -1,20 +1,34 @@
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.io.File;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.concurrent.Future;
 
 public class MusicPlayerGUI extends JFrame {
+    private static final int SEARCH_LIMIT = 100;
+
     private Playlist currentPlaylist;
-    private DefaultListModel<String> songListModel;
-    private JList<String> songList;
+    private PlaylistListModel songListModel;
+    private JList<Song> songList;
     private JLabel nowPlayingLabel;
     private JLabel durationLabel;
+    private JLabel songCountLabel;
     private JButton prevButton, playButton, nextButton;
+    private JCheckBox shufflePlayBox;
+    private JTextField searchField;
+    private JLabel searchStatusLabel;
+    private int searchMatchIndex = -1;
     private Song currentlyPlayingSong;
     private boolean isPlaying = false;
 
@@ -22,6 +36,7 @@ public class MusicPlayerGUI extends JFrame {
         // Initialize playlist
         currentPlaylist = new Playlist("My Playlist");
         addSampleSongs();
+        currentPlaylist.enableUndo();
 
         // Set up the main frame
         setTitle("Music Playlist Manager");
@@ -51,18 +66,28 @@ public class MusicPlayerGUI extends JFrame {
         // Add the main panel to the frame
         add(mainPanel);
 
-        // Update the song list display
-        updateSongList();
+        // Update the playlist information labels
+        updatePlaylistInfo();
     }
 
     private JPanel createPlaylistPanel() {
         JPanel panel = new JPanel(new BorderLayout(5, 5));
         panel.setBorder(BorderFactory.createTitledBorder("Playlist"));
 
-        // Create song list model and JList
-        songListModel = new DefaultListModel<>();
+        // Create song list model and JList. The model reads rows from the playlist
+        // on demand; a fixed cell height keeps JList from measuring every row.
+        songListModel = new PlaylistListModel(currentPlaylist);
         songList = new JList<>(songListModel);
         songList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        songList.setFixedCellHeight(new JLabel("Xg").getPreferredSize().height + 4);
+        songList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                String text = value instanceof Song ? formatSong((Song) value) : "";
+                return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+            }
+        });
         songList.addListSelectionListener(new ListSelectionListener() {
             @Override
             public void valueChanged(ListSelectionEvent e) {
@@ -80,17 +105,81 @@ public class MusicPlayerGUI extends JFrame {
         JScrollPane scrollPane = new JScrollPane(songList);
         panel.add(scrollPane, BorderLayout.CENTER);
 
+        // Search box: matches show up while typing, Enter steps through them
+        JPanel searchPanel = new JPanel(new BorderLayout(5, 0));
+        searchPanel.add(new JLabel("Search:"), BorderLayout.WEST);
+        searchField = new JTextField();
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                runSearch();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                runSearch();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                runSearch();
+            }
+        });
+        searchField.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showNextMatch();
+            }
+        });
+        searchPanel.add(searchField, BorderLayout.CENTER);
+        searchStatusLabel = new JLabel(" ");
+        searchPanel.add(searchStatusLabel, BorderLayout.EAST);
+        panel.add(searchPanel, BorderLayout.NORTH);
+
         // Add info panel at the bottom
         JPanel infoPanel = new JPanel(new BorderLayout());
         durationLabel = new JLabel("Total Duration: " + currentPlaylist.getTotalDurationFormatted());
         infoPanel.add(durationLabel, BorderLayout.WEST);
-        JLabel songCountLabel = new JLabel("Songs: " + currentPlaylist.getSize());
+        songCountLabel = new JLabel("Songs: " + currentPlaylist.getSize());
         infoPanel.add(songCountLabel, BorderLayout.EAST);
         panel.add(infoPanel, BorderLayout.SOUTH);
 
         return panel;
     }
 
+    // Show how many songs match the search box and scroll to the best one
+    private void runSearch() {
+        searchMatchIndex = -1;
+        String query = searchField.getText().trim();
+        if (query.isEmpty()) {
+            searchStatusLabel.setText(" ");
+            return;
+        }
+
+        int[] matches = currentPlaylist.searchPositions(query, SEARCH_LIMIT);
+        if (matches.length == 0) {
+            searchStatusLabel.setText("No matches");
+        } else {
+            searchStatusLabel.setText(matches.length + (matches.length == SEARCH_LIMIT ? "+" : "") + " matches");
+            songList.ensureIndexIsVisible(matches[0]);
+        }
+    }
+
+    // Select the next search match, best match first
+    private void showNextMatch() {
+        String query = searchField.getText().trim();
+        if (query.isEmpty()) {
+            return;
+        }
+        // Searched again, since the playlist may have changed since typing
+        int[] matches = currentPlaylist.searchPositions(query, SEARCH_LIMIT);
+        if (matches.length > 0) {
+            searchMatchIndex = (searchMatchIndex + 1) % matches.length;
+            songList.setSelectedIndex(matches[searchMatchIndex]);
+            songList.ensureIndexIsVisible(matches[searchMatchIndex]);
+        }
+    }
+
     private JPanel createControlsPanel() {
         JPanel panel = new JPanel();
         panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
@@ -118,7 +207,7 @@ public class MusicPlayerGUI extends JFrame {
                 int selectedIndex = songList.getSelectedIndex();
                 if (selectedIndex != -1) {
                     currentPlaylist.removeSong(selectedIndex);
-                    updateSongList();
+                    updatePlaylistInfo();
                 } else {
                     JOptionPane.showMessageDialog(MusicPlayerGUI.this,
                             "Please select a song to remove.",
@@ -138,7 +227,7 @@ public class MusicPlayerGUI extends JFrame {
                 int selectedIndex = songList.getSelectedIndex();
                 if (selectedIndex > 0) {
                     currentPlaylist.moveSongUp(selectedIndex);
-                    updateSongList();
+                    updatePlaylistInfo();
                     songList.setSelectedIndex(selectedIndex - 1);
                 }
             }
@@ -155,7 +244,7 @@ public class MusicPlayerGUI extends JFrame {
                 int selectedIndex = songList.getSelectedIndex();
                 if (selectedIndex != -1 && selectedIndex < currentPlaylist.getSize() - 1) {
                     currentPlaylist.moveSongDown(selectedIndex);
-                    updateSongList();
+                    updatePlaylistInfo();
                     songList.setSelectedIndex(selectedIndex + 1);
                 }
             }
@@ -170,12 +259,27 @@ public class MusicPlayerGUI extends JFrame {
             @Override
             public void actionPerformed(ActionEvent e) {
                 currentPlaylist.shuffle();
-                updateSongList();
+                updatePlaylistInfo();
             }
         });
         panel.add(shuffleButton);
         panel.add(Box.createRigidArea(new Dimension(0, 5)));
 
+        // Shuffle play toggle: random play order without reordering the list
+        shufflePlayBox = new JCheckBox("Shuffle Play");
+        shufflePlayBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (shufflePlayBox.isSelected()) {
+                    currentPlaylist.enableShufflePlay();
+                } else {
+                    currentPlaylist.disableShufflePlay();
+                }
+            }
+        });
+        panel.add(shufflePlayBox);
+        panel.add(Box.createRigidArea(new Dimension(0, 5)));
+
         // Add vertical glue to push everything to the top
         panel.add(Box.createVerticalGlue());
 
@@ -262,7 +366,10 @@ public class MusicPlayerGUI extends JFrame {
                         "New Playlist", JOptionPane.QUESTION_MESSAGE);
                 if (name != null && !name.trim().isEmpty()) {
                     currentPlaylist = new Playlist(name);
-                    updateSongList();
+                    currentPlaylist.enableUndo();
+                    songListModel.setPlaylist(currentPlaylist);
+                    shufflePlayBox.setSelected(false);
+                    updatePlaylistInfo();
                     nowPlayingLabel.setText("No song selected");
                     setTitle("Music Playlist Manager - " + name);
                 }
@@ -282,19 +389,44 @@ public class MusicPlayerGUI extends JFrame {
                 int result = fileChooser.showOpenDialog(MusicPlayerGUI.this);
                 if (result == JFileChooser.APPROVE_OPTION) {
                     File selectedFile = fileChooser.getSelectedFile();
-                    Playlist loadedPlaylist = Playlist.loadFromFile(selectedFile.getAbsolutePath());
-                    if (loadedPlaylist != null) {
-                        currentPlaylist = loadedPlaylist;
-                        updateSongList();
-                        setTitle("Music Playlist Manager - " + currentPlaylist.getName());
-                        JOptionPane.showMessageDialog(MusicPlayerGUI.this,
-                                "Playlist loaded successfully!",
-                                "Success", JOptionPane.INFORMATION_MESSAGE);
-                    } else {
-                        JOptionPane.showMessageDialog(MusicPlayerGUI.this,
-                                "Failed to load playlist.",
-                                "Error", JOptionPane.ERROR_MESSAGE);
-                    }
+                    final ProgressMonitor monitor = createProgressMonitor("Opening " + selectedFile.getName());
+                    final Future<?>[] task = new Future<?>[1];
+
+                    // Load on the I/O executor; callbacks come back on the Event Dispatch Thread
+                    task[0] = PlaylistIO.load(selectedFile.getAbsolutePath(), SwingUtilities::invokeLater,
+                            new PlaylistIO.Listener<Playlist>() {
+                        @Override
+                        public void progress(long done, long total) {
+                            updateProgress(monitor, task[0], done, total);
+                        }
+
+                        @Override
+                        public void succeeded(Playlist loadedPlaylist) {
+                            monitor.close();
+                            currentPlaylist = loadedPlaylist;
+                            currentPlaylist.enableUndo();
+                            songListModel.setPlaylist(currentPlaylist);
+                            shufflePlayBox.setSelected(false);
+                            updatePlaylistInfo();
+                            setTitle("Music Playlist Manager - " + currentPlaylist.getName());
+                            JOptionPane.showMessageDialog(MusicPlayerGUI.this,
+                                    "Playlist loaded successfully!",
+                                    "Success", JOptionPane.INFORMATION_MESSAGE);
+                        }
+
+                        @Override
+                        public void failed(IOException error) {
+                            monitor.close();
+                            JOptionPane.showMessageDialog(MusicPlayerGUI.this,
+                                    "Failed to load playlist: " + error.getMessage(),
+                                    "Error", JOptionPane.ERROR_MESSAGE);
+                        }
+
+                        @Override
+                        public void cancelled() {
+                            monitor.close();
+                        }
+                    });
                 }
             }
         });
@@ -317,15 +449,39 @@ public class MusicPlayerGUI extends JFrame {
                         filePath += ".dat";
                     }
                     
-                    if (currentPlaylist.saveToFile(filePath)) {
-                        JOptionPane.showMessageDialog(MusicPlayerGUI.this,
-                                "Playlist saved successfully!",
-                                "Success", JOptionPane.INFORMATION_MESSAGE);
-                    } else {
-                        JOptionPane.showMessageDialog(MusicPlayerGUI.this,
-                                "Failed to save playlist.",
-                                "Error", JOptionPane.ERROR_MESSAGE);
-                    }
+                    final ProgressMonitor monitor = createProgressMonitor("Saving " + selectedFile.getName());
+                    final Future<?>[] task = new Future<?>[1];
+
+                    // The song order is captured here on the EDT in O(1), then the songs are
+                    // gathered, encoded and written on the I/O executor
+                    task[0] = PlaylistIO.save(currentPlaylist, filePath, SwingUtilities::invokeLater,
+                            new PlaylistIO.Listener<String>() {
+                        @Override
+                        public void progress(long done, long total) {
+                            updateProgress(monitor, task[0], done, total);
+                        }
+
+                        @Override
+                        public void succeeded(String savedPath) {
+                            monitor.close();
+                            JOptionPane.showMessageDialog(MusicPlayerGUI.this,
+                                    "Playlist saved successfully!",
+                                    "Success", JOptionPane.INFORMATION_MESSAGE);
+                        }
+
+                        @Override
+                        public void failed(IOException error) {
+                            monitor.close();
+                            JOptionPane.showMessageDialog(MusicPlayerGUI.this,
+                                    "Failed to save playlist: " + error.getMessage(),
+                                    "Error", JOptionPane.ERROR_MESSAGE);
+                        }
+
+                        @Override
+                        public void cancelled() {
+                            monitor.close();
+                        }
+                    });
                 }
             }
         });
@@ -343,6 +499,51 @@ public class MusicPlayerGUI extends JFrame {
         });
         fileMenu.add(exitItem);
 
+        // Edit menu
+        JMenu editMenu = new JMenu("Edit");
+
+        JMenuItem undoItem = new JMenuItem("Undo");
+        undoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK));
+        undoItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (currentPlaylist.undo()) {
+                    updatePlaylistInfo();
+                }
+            }
+        });
+        editMenu.add(undoItem);
+
+        JMenuItem redoItem = new JMenuItem("Redo");
+        redoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK));
+        redoItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (currentPlaylist.redo()) {
+                    updatePlaylistInfo();
+                }
+            }
+        });
+        editMenu.add(redoItem);
+        editMenu.addSeparator();
+
+        JMenuItem jumpItem = new JMenuItem("Jump to Time...");
+        jumpItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_G, InputEvent.CTRL_DOWN_MASK));
+        jumpItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showJumpToTimeDialog();
+            }
+        });
+        editMenu.add(jumpItem);
+
+        // Sort menu
+        JMenu sortMenu = new JMenu("Sort");
+        sortMenu.add(createSortItem("By Title", Song.BY_TITLE));
+        sortMenu.add(createSortItem("By Artist", Song.BY_ARTIST.thenComparing(Song.BY_ALBUM)));
+        sortMenu.add(createSortItem("By Album", Song.BY_ALBUM));
+        sortMenu.add(createSortItem("By Duration", Song.BY_DURATION));
+
         // Help menu
         JMenu helpMenu = new JMenu("Help");
 
@@ -359,11 +560,41 @@ public class MusicPlayerGUI extends JFrame {
         helpMenu.add(aboutItem);
 
         menuBar.add(fileMenu);
+        menuBar.add(editMenu);
+        menuBar.add(sortMenu);
         menuBar.add(helpMenu);
 
         return menuBar;
     }
 
+    private JMenuItem createSortItem(String label, final Comparator<Song> order) {
+        JMenuItem item = new JMenuItem(label);
+        item.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                currentPlaylist.sort(order);
+                updatePlaylistInfo();
+            }
+        });
+        return item;
+    }
+
+    // Progress dialog for a background load or save; it only pops up for slow operations
+    private ProgressMonitor createProgressMonitor(String message) {
+        ProgressMonitor monitor = new ProgressMonitor(this, message, null, 0, 100);
+        monitor.setMillisToDecideToPopup(200);
+        monitor.setMillisToPopup(400);
+        return monitor;
+    }
+
+    private void updateProgress(ProgressMonitor monitor, Future<?> task, long done, long total) {
+        if (monitor.isCanceled()) {
+            task.cancel(true);
+        } else if (total > 0) {
+            monitor.setProgress((int) (done * 100 / total));
+        }
+    }
+
     private void showAddSongDialog() {
         // Create custom dialog
         JDialog dialog = new JDialog(this, "Add Song", true);
@@ -429,7 +660,7 @@ public class MusicPlayerGUI extends JFrame {
 
                     Song newSong = new Song(title, artist, album, duration);
                     currentPlaylist.addSong(newSong);
-                    updateSongList();
+                    updatePlaylistInfo();
                     dialog.dispose();
                 } catch (NumberFormatException ex) {
                     JOptionPane.showMessageDialog(dialog,
@@ -447,7 +678,7 @@ public class MusicPlayerGUI extends JFrame {
     private void updateNowPlaying(Song song) {
         if (song != null) {
             currentlyPlayingSong = song;
-            nowPlayingLabel.setText(song.getTitle() + " - " + song.getArtist() + " (" + song.getFormattedDuration() + ")");
+            nowPlayingLabel.setText(formatSong(song));
             if (!isPlaying) {
                 playButton.setText("▶ Play");
             } else {
@@ -460,45 +691,61 @@ public class MusicPlayerGUI extends JFrame {
         }
     }
 
-    private void moveToSong(int index) {
-        // Get the song at the specified index
-        Song song = currentPlaylist.getSong(index);
-        if (song != null) {
-            // We need to iterate through the playlist to set the current song
-            // This is a limitation of our current implementation
-            // In a real application, we might modify the playlist class to support this directly
-            int currentIndex = 0;
-            Node current = currentPlaylist.getHead(); // Assuming you add a getHead() method to Playlist
-            
-            while (current != null && currentIndex < index) {
-                current = current.getNext();
-                currentIndex++;
-            }
-            
-            if (current != null) {
-                currentPlaylist.setCurrentNode(current); // Assuming you add a setCurrentNode method to Playlist
-                updateNowPlaying(song);
+    // Ask for a time such as 3:12:00 and make the song playing then current
+    private void showJumpToTimeDialog() {
+        String input = JOptionPane.showInputDialog(MusicPlayerGUI.this,
+                "Time into the playlist (h:mm:ss, m:ss or seconds):",
+                "Jump to Time", JOptionPane.QUESTION_MESSAGE);
+        if (input == null || input.trim().isEmpty()) {
+            return;
+        }
+
+        long elapsed = parseTime(input.trim());
+        if (elapsed < 0 || currentPlaylist.jumpToTime(elapsed) < 0) {
+            JOptionPane.showMessageDialog(MusicPlayerGUI.this,
+                    "Enter a time within the playlist's " + currentPlaylist.getTotalDurationFormatted() + ".",
+                    "Invalid Time", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        songList.setSelectedIndex(currentPlaylist.getCurrentIndex());
+        songList.ensureIndexIsVisible(currentPlaylist.getCurrentIndex());
+        updateNowPlaying(currentPlaylist.getCurrentSong());
+    }
+
+    // Seconds in h:mm:ss, m:ss or plain seconds, or -1 if the text is not a time
+    private static long parseTime(String text) {
+        long seconds = 0;
+        for (String part : text.split(":", -1)) {
+            try {
+                int value = Integer.parseInt(part.trim());
+                if (value < 0) {
+                    return -1;
+                }
+                seconds = seconds * 60 + value;
+            } catch (NumberFormatException e) {
+                return -1;
             }
         }
+        return seconds;
     }
 
-    private void updateSongList() {
-        songListModel.clear();
-        
-        // Traverse the playlist and add each song to the list model
-        Node current = currentPlaylist.getHead(); // Assuming you add a getHead() method
-        int index = 0;
-        
-        while (current != null) {
-            Song song = current.getSong();
-            String displayText = song.getTitle() + " - " + song.getArtist() + " (" + song.getFormattedDuration() + ")";
-            songListModel.addElement(displayText);
-            current = current.getNext();
-            index++;
+    private void moveToSong(int index) {
+        // Jump straight to the selected position; the playlist's index finds the node
+        Song song = currentPlaylist.jumpTo(index);
+        if (song != null) {
+            updateNowPlaying(song);
         }
-        
-        // Update playlist information
+    }
+
+    // Refresh the labels under the list; the list itself follows the playlist through its model
+    private void updatePlaylistInfo() {
         durationLabel.setText("Total Duration: " + currentPlaylist.getTotalDurationFormatted());
+        songCountLabel.setText("Songs: " + currentPlaylist.getSize());
+        songCountLabel.setToolTipText(currentPlaylist.getStats().toString());
+    }
+
+    private static String formatSong(Song song) {
+        return song.getTitle() + " - " + song.getArtist() + " (" + song.getFormattedDuration() + ")";
     }
 
     private void addSampleSongs() {
@@ -517,6 +764,11 @@ public class MusicPlayerGUI extends JFrame {
             e.printStackTrace();
         }
 
+        // java -Dplaylist.metrics=true MusicPlayerGUI publishes metrics over JMX
+        if (PlaylistMetrics.isEnabled()) {
+            PlaylistMetrics.registerMBean();
+        }
+
         // Start the application
         SwingUtilities.invokeLater(new Runnable() {
             @Override
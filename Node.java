@@ -1,9 +1,21 @@
 // Node.java
-public class Node {
+public class Node implements SongListener {
     private Song song;
     private Node next;
     private Node prev; // For doubly-linked list
 
+    // Order-statistic tree links, maintained by PlaylistIndex
+    Node left;
+    Node right;
+    Node parent;
+    int weight = 1; // number of nodes in this subtree
+    int songDuration; // song.getDuration(), kept here so sums need not visit every Song
+    long duration; // total song duration of this subtree, in seconds
+    int priority;
+
+    // Playlist this node is currently linked into, null once removed
+    Playlist owner;
+
     public Node(Song song) {
         this.song = song;
         this.next = null;
@@ -25,7 +37,11 @@ public class Node {
 
     // Setters
     public void setSong(Song song) {
+        Song oldSong = this.song;
         this.song = song;
+        if (owner != null) {
+            owner.nodeSongReplaced(this, oldSong);
+        }
     }
 
     public void setNext(Node next) {
@@ -35,4 +51,11 @@ public class Node {
     public void setPrev(Node prev) {
         this.prev = prev;
     }
+
+    @Override
+    public void songChanged(Song song, String oldTitle, String oldArtist, String oldAlbum, int oldDuration) {
+        if (owner != null) {
+            owner.nodeSongChanged(this, oldTitle, oldArtist, oldAlbum, oldDuration);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,262 @@
+// OffHeapSongCatalog.java
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Song library kept in direct memory, outside the garbage-collected heap.
+//
+// Songs are fixed-width records in direct ByteBuffer chunks:
+//   int title, int artist, int album, int duration
+// where the string fields are offsets into a string arena, also made of
+// direct chunks, holding each distinct string once as an int byte length
+// followed by UTF-8 bytes. Duplicates are found through an open-addressing
+// hash table of arena offsets, itself in direct memory. The heap only holds
+// the chunk arrays, so the garbage collector's work does not grow with the
+// number of songs.
+//
+// Strings are decoded each time they are read. Chunks are never moved or
+// freed while the catalog is alive; strings replaced by a setter stay in the
+// arena. The arena is addressed with int offsets, which limits it to 2 GB
+// of distinct strings.
+public class OffHeapSongCatalog implements SongCatalog {
+    private static final int RECORD_SIZE = 16;
+    private static final int RECORDS_PER_CHUNK = 1 << 16; // 1 MB chunks
+    private static final int ARENA_CHUNK_BITS = 22;
+    private static final int ARENA_CHUNK_SIZE = 1 << ARENA_CHUNK_BITS; // 4 MB chunks
+    private static final int NO_STRING = -1;
+
+    private ByteBuffer[] records = new ByteBuffer[16];
+    private int size;
+
+    private ByteBuffer[] arena = new ByteBuffer[16];
+    private int arenaChunks;
+    private int arenaEnd; // offset of the next free arena byte
+
+    // Slots hold arena offset + 1; 0 marks an empty slot
+    private ByteBuffer stringSlots = ByteBuffer.allocateDirect(1024 * 4);
+    private int slotCount = 1024;
+    private int stringCount;
+
+    private final CatalogViews views = new CatalogViews();
+
+    @Override
+    public int add(String title, String artist, String album, int duration) {
+        int chunk = size / RECORDS_PER_CHUNK;
+        if (chunk == records.length) {
+            records = Arrays.copyOf(records, chunk * 2);
+        }
+        if (records[chunk] == null) {
+            records[chunk] = ByteBuffer.allocateDirect(RECORDS_PER_CHUNK * RECORD_SIZE);
+        }
+
+        int record = (size % RECORDS_PER_CHUNK) * RECORD_SIZE;
+        ByteBuffer buffer = records[chunk];
+        buffer.putInt(record, intern(title));
+        buffer.putInt(record + 4, intern(artist));
+        buffer.putInt(record + 8, intern(album));
+        buffer.putInt(record + 12, duration);
+        return size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // Number of distinct strings stored for all songs
+    public int getStringCount() {
+        return stringCount;
+    }
+
+    // Direct memory in use, in bytes
+    public long getOffHeapBytes() {
+        long bytes = (long) stringSlots.capacity() + (long) arenaChunks * ARENA_CHUNK_SIZE;
+        for (ByteBuffer chunk : records) {
+            if (chunk != null) {
+                bytes += chunk.capacity();
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public CatalogSong getSong(int id) {
+        checkId(id);
+        return new CatalogSong(this, views, id);
+    }
+
+    // Field access by song id
+    @Override
+    public String getTitle(int id) {
+        return decode(field(id, 0));
+    }
+
+    @Override
+    public String getArtist(int id) {
+        return decode(field(id, 4));
+    }
+
+    @Override
+    public String getAlbum(int id) {
+        return decode(field(id, 8));
+    }
+
+    @Override
+    public int getDuration(int id) {
+        return field(id, 12);
+    }
+
+    @Override
+    public void setTitle(int id, String title) {
+        setField(id, 0, intern(title));
+    }
+
+    @Override
+    public void setArtist(int id, String artist) {
+        setField(id, 4, intern(artist));
+    }
+
+    @Override
+    public void setAlbum(int id, String album) {
+        setField(id, 8, intern(album));
+    }
+
+    @Override
+    public void setDuration(int id, int duration) {
+        setField(id, 12, duration);
+    }
+
+    private int field(int id, int offset) {
+        checkId(id);
+        return records[id / RECORDS_PER_CHUNK].getInt((id % RECORDS_PER_CHUNK) * RECORD_SIZE + offset);
+    }
+
+    private void setField(int id, int offset, int value) {
+        checkId(id);
+        ByteBuffer chunk = records[id / RECORDS_PER_CHUNK];
+        int position = (id % RECORDS_PER_CHUNK) * RECORD_SIZE + offset;
+        views.write(this, id, () -> chunk.putInt(position, value));
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Song id " + id + ", catalog size " + size);
+        }
+    }
+
+    // Arena offset of value, appending it if it is new
+    private int intern(String value) {
+        if (value == null) {
+            return NO_STRING;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytes);
+        int mask = slotCount - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = stringSlots.getInt(slot * 4);
+            if (entry == 0) {
+                int offset = append(bytes);
+                stringSlots.putInt(slot * 4, offset + 1);
+                stringCount++;
+                if (stringCount * 2 > slotCount) {
+                    resizeSlots();
+                }
+                return offset;
+            }
+            if (matches(entry - 1, bytes)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private int append(byte[] bytes) {
+        int length = 4 + bytes.length;
+        if (length > ARENA_CHUNK_SIZE) {
+            throw new IllegalArgumentException("String too long for the catalog: " + bytes.length + " bytes");
+        }
+        // Strings never straddle two chunks
+        boolean chunkFull = (arenaEnd >>> ARENA_CHUNK_BITS) >= arenaChunks;
+        if (chunkFull || (arenaEnd & (ARENA_CHUNK_SIZE - 1)) + length > ARENA_CHUNK_SIZE) {
+            if ((long) arenaChunks << ARENA_CHUNK_BITS > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Catalog string arena is full");
+            }
+            arenaEnd = arenaChunks << ARENA_CHUNK_BITS;
+            if (arenaChunks == arena.length) {
+                arena = Arrays.copyOf(arena, arenaChunks * 2);
+            }
+            arena[arenaChunks++] = ByteBuffer.allocateDirect(ARENA_CHUNK_SIZE);
+        }
+
+        int offset = arenaEnd;
+        ByteBuffer chunk = arena[offset >>> ARENA_CHUNK_BITS].duplicate();
+        chunk.position(offset & (ARENA_CHUNK_SIZE - 1));
+        chunk.putInt(bytes.length);
+        chunk.put(bytes);
+        arenaEnd += length;
+        return offset;
+    }
+
+    private String decode(int offset) {
+        if (offset == NO_STRING) {
+            return null;
+        }
+        ByteBuffer chunk = arena[offset >>> ARENA_CHUNK_BITS].duplicate();
+        int position = offset & (ARENA_CHUNK_SIZE - 1);
+        byte[] bytes = new byte[chunk.getInt(position)];
+        chunk.position(position + 4);
+        chunk.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean matches(int offset, byte[] bytes) {
+        ByteBuffer chunk = arena[offset >>> ARENA_CHUNK_BITS];
+        int position = offset & (ARENA_CHUNK_SIZE - 1);
+        if (chunk.getInt(position) != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (chunk.get(position + 4 + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void resizeSlots() {
+        int newCount = slotCount * 2;
+        ByteBuffer newSlots = ByteBuffer.allocateDirect(newCount * 4);
+        int mask = newCount - 1;
+        for (int i = 0; i < slotCount; i++) {
+            int entry = stringSlots.getInt(i * 4);
+            if (entry != 0) {
+                int slot = hashAt(entry - 1) & mask;
+                while (newSlots.getInt(slot * 4) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                newSlots.putInt(slot * 4, entry);
+            }
+        }
+        stringSlots = newSlots;
+        slotCount = newCount;
+    }
+
+    // Hash of a string already in the arena, equal to hash() of its bytes
+    private int hashAt(int offset) {
+        ByteBuffer chunk = arena[offset >>> ARENA_CHUNK_BITS];
+        int position = offset & (ARENA_CHUNK_SIZE - 1);
+        int length = chunk.getInt(position);
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + chunk.get(position + 4 + i);
+        }
+        return spread(hash);
+    }
+
+    private static int hash(byte[] bytes) {
+        return spread(Arrays.hashCode(bytes));
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
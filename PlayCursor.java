@@ -0,0 +1,139 @@
+// PlayCursor.java
+import java.util.concurrent.locks.Lock;
+
+// A playback position of its own over a shared playlist.
+//
+// Every listening session can keep a cursor instead of a copy of the playlist:
+// a cursor is just a reference to the node it is on, so any number of them
+// share one song list. Moving a cursor does not change the playlist's own
+// current song or fire playlist events.
+//
+// A removed node keeps its next link, so a cursor whose song was removed
+// follows those links on its next use until it reaches a song that is still
+// in the playlist - the song that followed the removed one, as for the
+// playlist's own current song. A cursor belongs to one session; it is not
+// meant to be shared between threads.
+public class PlayCursor {
+    private final Playlist playlist;
+    private final Lock lock; // read lock of the owning ConcurrentPlaylist, if any
+    private Node node;
+
+    PlayCursor(Playlist playlist, Node start, Lock lock) {
+        this.playlist = playlist;
+        this.node = start;
+        this.lock = lock;
+    }
+
+    public Playlist getPlaylist() {
+        return playlist;
+    }
+
+    public Song getCurrentSong() {
+        lock();
+        try {
+            reanchor();
+            return node != null ? node.getSong() : null;
+        } finally {
+            unlock();
+        }
+    }
+
+    // Position of the cursor's song, or -1 if the playlist is empty
+    public int getCurrentIndex() {
+        lock();
+        try {
+            reanchor();
+            return node != null ? playlist.indexOfNode(node) : -1;
+        } finally {
+            unlock();
+        }
+    }
+
+    public Song nextSong() {
+        lock();
+        try {
+            reanchor();
+            if (node == null || node.getNext() == null) {
+                // If at the end, loop back to beginning
+                node = playlist.getHead();
+            } else {
+                node = node.getNext();
+            }
+            return node != null ? node.getSong() : null;
+        } finally {
+            unlock();
+        }
+    }
+
+    public Song previousSong() {
+        lock();
+        try {
+            reanchor();
+            if (node == null || node.getPrev() == null) {
+                // If at the beginning, loop to end
+                node = playlist.getTail();
+            } else {
+                node = node.getPrev();
+            }
+            return node != null ? node.getSong() : null;
+        } finally {
+            unlock();
+        }
+    }
+
+    // Move to position; out-of-range positions leave the cursor alone and return null
+    public Song jumpTo(int position) {
+        lock();
+        try {
+            if (position < 0 || position >= playlist.getSize()) {
+                return null;
+            }
+            node = playlist.getNode(position);
+            return node.getSong();
+        } finally {
+            unlock();
+        }
+    }
+
+    // Move to the song playing elapsed seconds into the playlist and return
+    // how far into that song elapsed falls, or -1 if it is out of range
+    public long jumpToTime(long elapsed) {
+        lock();
+        try {
+            int position = playlist.getPositionAt(elapsed);
+            if (position < 0) {
+                return -1;
+            }
+            node = playlist.getNode(position);
+            return elapsed - playlist.getElapsedTime(position);
+        } finally {
+            unlock();
+        }
+    }
+
+    // Step off nodes that have been removed since the cursor last moved
+    private void reanchor() {
+        if (node != null && node.owner == playlist) {
+            return;
+        }
+        while (node != null && node.owner != playlist) {
+            node = node.getNext();
+        }
+        if (node == null) {
+            // The removed songs were at the end, or the playlist was empty
+            node = playlist.getHead();
+        }
+    }
+
+    private void lock() {
+        if (lock != null) {
+            lock.lock();
+        }
+    }
+
+    private void unlock() {
+        if (lock != null) {
+            lock.unlock();
+        }
+    }
+}
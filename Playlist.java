@@ -1,21 +1,99 @@
 // Playlist.java
-import java.io.*;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class Playlist implements Iterable<Song> {
+    private static final Logger LOGGER = Logger.getLogger(Playlist.class.getName());
+
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 13; // smallest list sorted as an array
 
-public class Playlist {
     private Node head;
     private Node tail;
     private Node currentSong;
     private String name;
     private int size;
+    private PlaylistIndex index = new PlaylistIndex();
+    private PlaylistStats stats = new PlaylistStats();
+    private SongKeyIndex keyIndex; // built on first lookup
+    private SearchIndex<Node> searchIndex; // built on first search
+    private PlaylistJournal journal; // set while edits are being journaled
+    private List<PlaylistListener> listeners = new CopyOnWriteArrayList<>();
+    private PlaylistEventPublisher eventPublisher; // created by getEventPublisher()
+    private int publishedSize; // size as of the last published event
+
+    // Persistent copy of the song order for snapshot() and undo, kept in step
+    // with every structural edit once one of them has been used
+    private boolean versioned;
+    private SongTree version;
+    private Deque<PlaylistSnapshot> undoHistory; // set while undo is enabled
+    private Deque<PlaylistSnapshot> redoHistory;
+
+    // Set while songs are still read lazily from a memory-mapped file (see openMapped)
+    private MappedPlaylistFile mapped;
+    private int mappedCurrent = -1;
+    private Map<Integer, Song> mappedSongs;
+    private boolean mappedStatsLoaded;
+    private SearchIndex<Integer> mappedSearchIndex; // by position, so searching needs no nodes
+
+    // Set while nextSong/previousSong follow a shuffled order (see enableShufflePlay)
+    private boolean shufflePlay;
+    private long shuffleSeed;
+
+    // Keeps the aggregates right when a song read from a mapped file is edited
+    private final SongListener mappedSongListener = new SongListener() {
+        @Override
+        public void songChanged(Song song, String oldTitle, String oldArtist, String oldAlbum, int oldDuration) {
+            if (mappedStatsLoaded) {
+                stats.update(song, oldArtist, oldAlbum, oldDuration);
+            }
+            // Only songs read so far are in mappedSongs, so this scan is short
+            List<Integer> positions = new ArrayList<>(1);
+            for (Map.Entry<Integer, Song> entry : mappedSongs.entrySet()) {
+                if (entry.getValue() == song) {
+                    positions.add(entry.getKey());
+                }
+            }
+            // Listeners may read more songs into mappedSongs, so fire after the scan
+            for (int position : positions) {
+                if (mappedSearchIndex != null) {
+                    mappedSearchIndex.remove(position, oldTitle, oldArtist, oldAlbum);
+                    mappedSearchIndex.add(position, song.getTitle(), song.getArtist(), song.getAlbum());
+                }
+                fireSongsChanged(position, position);
+            }
+        }
+    };
     
     // Getters for GUI - These are needed for the GUI implementation
     public Node getHead() {
+        materialize();
         return head;
     }
     
     public void setCurrentNode(Node node) {
         this.currentSong = node;
+        currentChanged();
     }
 
     public Playlist(String name) {
@@ -28,40 +106,79 @@ public class Playlist {
 
     // Add song to the end of playlist
     public void addSong(Song song) {
-        Node newNode = new Node(song);
-        size++;
+        long start = PlaylistMetrics.start();
+        try {
+            materialize();
+            saveVersion();
+            Node newNode = createNode(song);
+            size++;
 
-        if (head == null) {
-            head = newNode;
-            tail = newNode;
-            currentSong = newNode; // Set as current if it's the first song
-            return;
-        }
+            boolean first = head == null;
+            if (first) {
+                head = newNode;
+                tail = newNode;
+                currentSong = newNode; // Set as current if it's the first song
+            } else {
+                tail.setNext(newNode);
+                newNode.setPrev(tail);
+                tail = newNode;
+            }
+            index.insert(size - 1, newNode);
+            if (versioned) {
+                version = SongTree.insert(version, size - 1, song);
+            }
 
-        tail.setNext(newNode);
-        newNode.setPrev(tail);
-        tail = newNode;
+            if (journal != null) {
+                journal.recordInsert(this, size - 1, song);
+            }
+            fireSongsInserted(size - 1, size - 1);
+            if (first) {
+                currentChanged();
+            }
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.ADD, start);
+        }
     }
 
     // Add song to the beginning of playlist
     public void addSongToBeginning(Song song) {
-        Node newNode = new Node(song);
-        size++;
+        long start = PlaylistMetrics.start();
+        try {
+            materialize();
+            saveVersion();
+            Node newNode = createNode(song);
+            size++;
 
-        if (head == null) {
-            head = newNode;
-            tail = newNode;
-            currentSong = newNode;
-            return;
-        }
+            boolean first = head == null;
+            if (first) {
+                head = newNode;
+                tail = newNode;
+                currentSong = newNode;
+            } else {
+                newNode.setNext(head);
+                head.setPrev(newNode);
+                head = newNode;
+            }
+            index.insert(0, newNode);
+            if (versioned) {
+                version = SongTree.insert(version, 0, song);
+            }
 
-        newNode.setNext(head);
-        head.setPrev(newNode);
-        head = newNode;
+            if (journal != null) {
+                journal.recordInsert(this, 0, song);
+            }
+            fireSongsInserted(0, 0);
+            if (first) {
+                currentChanged();
+            }
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.ADD, start);
+        }
     }
 
     // Add song at specific position (0-based index)
     public boolean addSongAt(Song song, int position) {
+        materialize();
         if (position < 0 || position > size) {
             return false;
         }
@@ -76,109 +193,538 @@ public class Playlist {
             return true;
         }
 
-        Node newNode = new Node(song);
-        Node current = head;
-        
-        // Navigate to the position
-        for (int i = 0; i < position - 1; i++) {
-            current = current.getNext();
+        // Inserts at either end are timed by the methods above
+        long start = PlaylistMetrics.start();
+        try {
+            saveVersion();
+            Node newNode = createNode(song);
+            Node current = index.get(position - 1);
+
+            // Insert the new node
+            newNode.setNext(current.getNext());
+            newNode.setPrev(current);
+
+            if (current.getNext() != null) {
+                current.getNext().setPrev(newNode);
+            }
+
+            current.setNext(newNode);
+            index.insert(position, newNode);
+            if (versioned) {
+                version = SongTree.insert(version, position, song);
+            }
+            size++;
+
+            if (journal != null) {
+                journal.recordInsert(this, position, song);
+            }
+            fireSongsInserted(position, position);
+            return true;
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.ADD, start);
+        }
+    }
+
+    // Add several songs so that the first of them ends up at position.
+    // The new nodes are linked into a chain of their own, spliced in with four
+    // pointer changes, and indexed as one block in O(count + log n).
+    public boolean addAll(Collection<? extends Song> songs, int position) {
+        long start = PlaylistMetrics.start();
+        try {
+            materialize();
+            if (position < 0 || position > size) {
+                return false;
+            }
+
+            Node first = null;
+            Node last = null;
+            int count = 0;
+            for (Song song : songs) {
+                Node node = createNode(song);
+                if (first == null) {
+                    first = node;
+                } else {
+                    last.setNext(node);
+                    node.setPrev(last);
+                }
+                last = node;
+                count++;
+            }
+            if (count == 0) {
+                return true;
+            }
+            saveVersion();
+
+            Node before = position > 0 ? index.get(position - 1) : null;
+            Node after = before != null ? before.getNext() : head;
+            first.setPrev(before);
+            last.setNext(after);
+            if (before != null) {
+                before.setNext(first);
+            } else {
+                head = first;
+            }
+            if (after != null) {
+                after.setPrev(last);
+            } else {
+                tail = last;
+            }
+            index.insertAll(position, first, count);
+            if (versioned) {
+                version = SongTree.insertAll(version, position, SongTree.build(first, count));
+            }
+            size += count;
+            boolean newCurrent = currentSong == null;
+            if (newCurrent) {
+                currentSong = head; // Set as current if the playlist was empty
+            }
+
+            if (journal != null) {
+                journal.beginBatch();
+                Node node = first;
+                for (int i = 0; i < count; i++, node = node.getNext()) {
+                    journal.recordInsert(this, position + i, node.getSong());
+                }
+                journal.endBatch(this);
+            }
+            fireSongsInserted(position, position + count - 1);
+            if (newCurrent) {
+                currentChanged();
+            }
+            return true;
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.ADD_ALL, start);
         }
+    }
+
+    // Remove every song the filter accepts, in one pass over the list, and
+    // return how many were removed. The filter sees every song before anything
+    // is removed. If the current song goes, the next remaining song becomes current.
+    public int removeIf(Predicate<? super Song> filter) {
+        long start = PlaylistMetrics.start();
+        try {
+            materialize();
+            IntList removed = new IntList();
+            int position = 0;
+            for (Node node = head; node != null; node = node.getNext(), position++) {
+                if (filter.test(node.getSong())) {
+                    removed.add(position);
+                }
+            }
+            if (removed.isEmpty()) {
+                return 0;
+            }
+            saveVersion();
+
+            boolean currentRemoved = false;
+            Node replacement = null;
+            Node node = head;
+            int next = 0;
+            for (position = 0; node != null; position++) {
+                Node following = node.getNext();
+                if (next < removed.size() && removed.get(next) == position) {
+                    next++;
+                    if (node == currentSong) {
+                        currentRemoved = true;
+                    }
+                    if (node.getPrev() != null) {
+                        node.getPrev().setNext(following);
+                    } else {
+                        head = following;
+                    }
+                    if (following != null) {
+                        following.setPrev(node.getPrev());
+                    } else {
+                        tail = node.getPrev();
+                    }
+                    releaseNode(node);
+                } else if (currentRemoved && replacement == null) {
+                    replacement = node;
+                }
+                node = following;
+            }
+
+            size -= removed.size();
+            index.rebuild(head, size);
+            if (currentRemoved) {
+                currentSong = replacement != null ? replacement : head;
+            }
 
-        // Insert the new node
-        newNode.setNext(current.getNext());
-        newNode.setPrev(current);
-        
-        if (current.getNext() != null) {
-            current.getNext().setPrev(newNode);
+            // Report from the end, so the positions of earlier songs are still valid
+            if (journal != null) {
+                journal.beginBatch();
+            }
+            for (int end = removed.size() - 1; end >= 0; ) {
+                int first = end;
+                while (first > 0 && removed.get(first - 1) == removed.get(first) - 1) {
+                    first--;
+                }
+                if (journal != null) {
+                    for (int i = end; i >= first; i--) {
+                        journal.recordRemove(this, removed.get(i));
+                    }
+                }
+                if (versioned) {
+                    version = SongTree.removeRange(version, removed.get(first), end - first + 1);
+                }
+                fireSongsRemoved(removed.get(first), removed.get(end));
+                end = first - 1;
+            }
+            if (journal != null) {
+                journal.endBatch(this);
+            }
+            if (currentRemoved) {
+                fireCurrentSongChanged();
+            }
+            return removed.size();
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.REMOVE_IF, start);
         }
-        
-        current.setNext(newNode);
-        size++;
-        
-        return true;
     }
 
     // Remove song by position
     public boolean removeSong(int position) {
-        if (head == null || position < 0 || position >= size) {
-            return false;
+        long start = PlaylistMetrics.start();
+        try {
+            materialize();
+            if (head == null || position < 0 || position >= size) {
+                return false;
+            }
+
+            removeNode(index.get(position));
+            return true;
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.REMOVE, start);
         }
+    }
 
-        // If removing the current song, move to next
-        if (currentSong == getNodeAt(position)) {
-            nextSong();
+    // Remove song by title and artist
+    public boolean removeSong(String title, String artist) {
+        long start = PlaylistMetrics.start();
+        try {
+            materialize();
+            Node node = findNode(title, artist);
+            if (node == null) {
+                return false;
+            }
+
+            removeNode(node);
+            return true;
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.REMOVE, start);
         }
+    }
 
-        if (position == 0) {
-            // Remove head
-            head = head.getNext();
-            if (head != null) {
-                head.setPrev(null);
-            } else {
-                tail = null;
+    // Find a song by title and artist (case-insensitive)
+    public Song findSong(String title, String artist) {
+        long start = PlaylistMetrics.start();
+        try {
+            materialize();
+            Node node = findNode(title, artist);
+            return node != null ? node.getSong() : null;
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.FIND, start);
+        }
+    }
+
+    // Full-text search over titles, artists and albums (see SearchIndex):
+    // every word of query must start a word of the song, best matches first
+    public List<Song> search(String query, int limit) {
+        List<Song> songs = new ArrayList<>();
+        if (mapped != null) {
+            for (int position : searchMapped(query, limit)) {
+                songs.add(mappedSong(position));
             }
-        } else if (position == size - 1) {
-            // Remove tail
-            tail = tail.getPrev();
-            if (tail != null) {
-                tail.setNext(null);
-            } else {
-                head = null;
+            return songs;
+        }
+        for (Node node : searchNodes(query, limit)) {
+            songs.add(node.getSong());
+        }
+        return songs;
+    }
+
+    // Positions of the best matches for query, best first
+    public int[] searchPositions(String query, int limit) {
+        if (mapped != null) {
+            return searchMapped(query, limit);
+        }
+        List<Node> nodes = searchNodes(query, limit);
+        int[] positions = new int[nodes.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = index.indexOf(nodes.get(i));
+        }
+        return positions;
+    }
+
+    private List<Node> searchNodes(String query, int limit) {
+        long start = PlaylistMetrics.start();
+        try {
+            // Equally good matches are listed in playlist order
+            return getSearchIndex().search(query, limit, new ToIntFunction<Node>() {
+                @Override
+                public int applyAsInt(Node node) {
+                    return index.indexOf(node);
+                }
+            });
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.SEARCH, start);
+        }
+    }
+
+    // Search a mapped playlist without building its nodes: positions cannot
+    // change until the first structural edit materializes it
+    private int[] searchMapped(String query, int limit) {
+        long start = PlaylistMetrics.start();
+        try {
+            List<Integer> matches = getMappedSearchIndex().search(query, limit, new ToIntFunction<Integer>() {
+                @Override
+                public int applyAsInt(Integer position) {
+                    return position;
+                }
+            });
+            int[] positions = new int[matches.size()];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = matches.get(i);
+            }
+            return positions;
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.SEARCH, start);
+        }
+    }
+
+    private SearchIndex<Integer> getMappedSearchIndex() {
+        if (mappedSearchIndex == null) {
+            mappedSearchIndex = new SearchIndex<>();
+            for (int i = 0; i < size; i++) {
+                Song song = mappedSongs.get(i);
+                if (song != null) {
+                    mappedSearchIndex.add(i, song.getTitle(), song.getArtist(), song.getAlbum());
+                } else {
+                    mappedSearchIndex.add(i, mapped.readTitle(i), mapped.readArtist(i), mapped.readAlbum(i));
+                }
             }
+        }
+        return mappedSearchIndex;
+    }
+
+    // Build the search index now, e.g. on a loading thread before the playlist
+    // is handed to the GUI, so the first search does not pay for it
+    void buildSearchIndex() {
+        if (mapped != null) {
+            getMappedSearchIndex();
         } else {
-            // Remove from middle
-            Node current = getNodeAt(position);
-            current.getPrev().setNext(current.getNext());
-            current.getNext().setPrev(current.getPrev());
+            getSearchIndex();
         }
+    }
 
-        size--;
-        return true;
+    // First matching node in playlist order, via the hash index
+    private Node findNode(String title, String artist) {
+        Node first = null;
+        int firstPosition = Integer.MAX_VALUE;
+
+        for (Node node : getKeyIndex().find(title, artist)) {
+            int position = index.indexOf(node);
+            if (position < firstPosition) {
+                first = node;
+                firstPosition = position;
+            }
+        }
+        return first;
     }
 
-    // Remove song by title and artist
-    public boolean removeSong(String title, String artist) {
-        if (head == null) {
-            return false;
+    // Unlink a node that belongs to this playlist
+    private void removeNode(Node node) {
+        int position = index.indexOf(node);
+        saveVersion();
+        boolean wasCurrent = currentSong == node;
+
+        // If removing the current song, move to next
+        if (wasCurrent) {
+            currentSong = node.getNext() != null ? node.getNext() : head;
+            if (currentSong == node) {
+                currentSong = null; // It was the only song
+            }
         }
 
-        Node current = head;
-        int position = 0;
+        if (node.getPrev() != null) {
+            node.getPrev().setNext(node.getNext());
+        } else {
+            head = node.getNext();
+        }
+
+        if (node.getNext() != null) {
+            node.getNext().setPrev(node.getPrev());
+        } else {
+            tail = node.getPrev();
+        }
+
+        index.remove(node);
+        if (versioned) {
+            version = SongTree.remove(version, position);
+        }
+        releaseNode(node);
+        size--;
 
-        while (current != null) {
-            if (current.getSong().getTitle().equalsIgnoreCase(title) && 
-                current.getSong().getArtist().equalsIgnoreCase(artist)) {
-                return removeSong(position);
+        if (journal != null) {
+            journal.recordRemove(this, position);
+        }
+        fireSongsRemoved(position, position);
+        if (wasCurrent) {
+            fireCurrentSongChanged();
+        }
+    }
+
+    // The title/artist index is only built once something looks a song up,
+    // so loading or bulk-building a playlist does not pay for it
+    private SongKeyIndex getKeyIndex() {
+        if (keyIndex == null) {
+            keyIndex = new SongKeyIndex();
+            for (Node node = head; node != null; node = node.getNext()) {
+                keyIndex.add(node);
             }
-            current = current.getNext();
-            position++;
         }
+        return keyIndex;
+    }
 
-        return false;
+    // Like the key index, the search index is only built when first needed
+    private SearchIndex<Node> getSearchIndex() {
+        if (searchIndex == null) {
+            searchIndex = new SearchIndex<>();
+            for (Node node = head; node != null; node = node.getNext()) {
+                addToSearchIndex(node, node.getSong());
+            }
+        }
+        return searchIndex;
     }
 
-    // Get node at position
-    private Node getNodeAt(int position) {
-        if (position < 0 || position >= size) {
-            return null;
+    private void addToSearchIndex(Node node, Song song) {
+        searchIndex.add(node, song.getTitle(), song.getArtist(), song.getAlbum());
+    }
+
+    // Create a node owned by this playlist and count its song in the aggregates
+    private Node createNode(Song song) {
+        Node node = new Node(song);
+        node.owner = this;
+        song.addSongListener(node);
+        stats.add(song);
+        if (keyIndex != null) {
+            keyIndex.add(node);
+        }
+        if (searchIndex != null) {
+            addToSearchIndex(node, song);
+        }
+        return node;
+    }
+
+    // Undo createNode once a node has been unlinked
+    private void releaseNode(Node node) {
+        node.owner = null;
+        node.getSong().removeSongListener(node);
+        stats.remove(node.getSong());
+        if (keyIndex != null) {
+            keyIndex.remove(node);
+        }
+        if (searchIndex != null) {
+            Song song = node.getSong();
+            searchIndex.remove(node, song.getTitle(), song.getArtist(), song.getAlbum());
+        }
+    }
+
+    // Called by a node when one of its song's fields was changed
+    void nodeSongChanged(Node node, String oldTitle, String oldArtist, String oldAlbum, int oldDuration) {
+        stats.update(node.getSong(), oldArtist, oldAlbum, oldDuration);
+        if (node.getSong().getDuration() != oldDuration) {
+            index.durationChanged(node);
+        }
+        if (keyIndex != null) {
+            keyIndex.update(node, oldTitle, oldArtist);
+        }
+        if (searchIndex != null) {
+            searchIndex.remove(node, oldTitle, oldArtist, oldAlbum);
+            addToSearchIndex(node, node.getSong());
         }
+        int position = index.indexOf(node);
+        if (journal != null) {
+            journal.recordSong(this, position, node.getSong());
+        }
+        fireSongsChanged(position, position);
+    }
 
-        Node current = head;
-        for (int i = 0; i < position; i++) {
-            current = current.getNext();
+    // Called by a node when it was given a different song
+    void nodeSongReplaced(Node node, Song oldSong) {
+        int position = index.indexOf(node);
+        saveVersion();
+        if (versioned) {
+            version = SongTree.set(version, position, node.getSong());
+        }
+        oldSong.removeSongListener(node);
+        stats.remove(oldSong);
+        node.getSong().addSongListener(node);
+        stats.add(node.getSong());
+        index.durationChanged(node);
+        if (keyIndex != null) {
+            keyIndex.update(node, oldSong.getTitle(), oldSong.getArtist());
+        }
+        if (searchIndex != null) {
+            searchIndex.remove(node, oldSong.getTitle(), oldSong.getArtist(), oldSong.getAlbum());
+            addToSearchIndex(node, node.getSong());
         }
-        return current;
+        if (journal != null) {
+            journal.recordSong(this, position, node.getSong());
+        }
+        fireSongsChanged(position, position);
+    }
+
+    // Get node at position
+    private Node getNodeAt(int position) {
+        return index.get(position);
+    }
+
+    // Node handles stay attached to their song while other entries move around,
+    // so a caller can keep one and hand it back to setCurrentNode later
+    public Node getNode(int position) {
+        materialize();
+        return getNodeAt(position);
+    }
+
+    public Node getCurrentNode() {
+        materialize();
+        return currentSong;
+    }
+
+    // A separate playback position for one listening session, starting at the
+    // current song. Cursors share this playlist's songs instead of copying them.
+    public PlayCursor newCursor() {
+        materialize();
+        return new PlayCursor(this, currentSong, null);
+    }
+
+    Node getTail() {
+        materialize();
+        return tail;
+    }
+
+    int indexOfNode(Node node) {
+        return index.indexOf(node);
     }
 
     // Get song at position
     public Song getSong(int position) {
-        Node node = getNodeAt(position);
-        return node != null ? node.getSong() : null;
+        long start = PlaylistMetrics.start();
+        try {
+            if (mapped != null) {
+                return position >= 0 && position < size ? mappedSong(position) : null;
+            }
+            Node node = getNodeAt(position);
+            return node != null ? node.getSong() : null;
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.GET, start);
+        }
     }
 
     // Display playlist
     public void displayPlaylist() {
-        if (head == null) {
+        if (size == 0) {
             System.out.println("Playlist is empty.");
             return;
         }
@@ -187,29 +733,68 @@ public class Playlist {
         System.out.println("Total songs: " + size);
         System.out.println("Total duration: " + getTotalDurationFormatted());
 
-        Node current = head;
+        int current = getCurrentIndex();
         int index = 0;
-
-        while (current != null) {
-            String currentMarker = (current == currentSong) ? " ► " : "   ";
-            System.out.println(index + "." + currentMarker + current.getSong());
-            current = current.getNext();
+        for (Song song : this) {
+            String currentMarker = (index == current) ? " ► " : "   ";
+            System.out.println(index + "." + currentMarker + song);
             index++;
         }
         System.out.println("===================\n");
     }
 
-    // Calculate total duration of playlist in seconds
-    public int getTotalDuration() {
-        int total = 0;
-        Node current = head;
+    // Iteration. The playlist must not be changed while an iterator or stream
+    // over it is in use.
 
-        while (current != null) {
-            total += current.getSong().getDuration();
-            current = current.getNext();
-        }
+    // Songs in order, following the node links in O(1) per song
+    @Override
+    public Iterator<Song> iterator() {
+        materialize();
+        return songsFrom(0);
+    }
+
+    // Splits in balanced halves, each part finding its first node through
+    // the index in O(log n) (see PlaylistSpliterator)
+    @Override
+    public Spliterator<Song> spliterator() {
+        materialize();
+        return new PlaylistSpliterator(this::songsFrom, 0, size, 0);
+    }
+
+    public Stream<Song> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    // Runs on the common ForkJoinPool, each worker walking its own stretch of nodes
+    public Stream<Song> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    private Iterator<Song> songsFrom(int position) {
+        final Node first = position == 0 ? head : index.get(position);
+        return new Iterator<Song>() {
+            private Node next = first;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
 
-        return total;
+            @Override
+            public Song next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Song song = next.getSong();
+                next = next.getNext();
+                return song;
+            }
+        };
+    }
+
+    // Total duration of playlist in seconds, kept up to date by the aggregates
+    public int getTotalDuration() {
+        return (int) getStats().getTotalDuration();
     }
 
     // Get formatted total duration
@@ -226,95 +811,465 @@ public class Playlist {
         }
     }
 
+    // Time offsets, in seconds. The index sums the song durations of every
+    // subtree, so each of these is O(log n) rather than a walk over the songs.
+
+    // Position of the song playing elapsed seconds into the playlist, or -1
+    // if elapsed is before the start or past the end
+    public int getPositionAt(long elapsed) {
+        long start = PlaylistMetrics.start();
+        try {
+            materialize();
+            return index.positionAt(elapsed);
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.SEEK, start);
+        }
+    }
+
+    // Time at which the song at position starts, or -1 for a position out of
+    // range; getElapsedTime(getSize()) is the total duration
+    public long getElapsedTime(int position) {
+        long start = PlaylistMetrics.start();
+        try {
+            if (position < 0 || position > size) {
+                return -1;
+            }
+            materialize();
+            return index.durationBefore(position);
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.SEEK, start);
+        }
+    }
+
+    // Time from the start of the current song to the end of the playlist
+    public long getRemainingTime() {
+        long start = PlaylistMetrics.start();
+        try {
+            materialize();
+            if (currentSong == null) {
+                return 0;
+            }
+            return index.totalDuration() - index.durationBefore(index.indexOf(currentSong));
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.SEEK, start);
+        }
+    }
+
+    // Make the song playing elapsed seconds into the playlist current and
+    // return how many seconds into that song elapsed falls, or -1 (leaving
+    // the current song alone) if elapsed is out of range
+    public long jumpToTime(long elapsed) {
+        long start = PlaylistMetrics.start();
+        try {
+            materialize();
+            int position = index.positionAt(elapsed);
+            if (position < 0) {
+                return -1;
+            }
+            moveCurrentTo(position);
+            return elapsed - index.durationBefore(position);
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.JUMP, start);
+        }
+    }
+
     // Navigation methods
+
+    // Make the song at position current and return it in one O(log n) step;
+    // out-of-range positions leave the current song alone and return null
+    public Song jumpTo(int position) {
+        long start = PlaylistMetrics.start();
+        try {
+            return moveCurrentTo(position);
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.JUMP, start);
+        }
+    }
+
+    private Song moveCurrentTo(int position) {
+        if (position < 0 || position >= size) {
+            return null;
+        }
+        if (mapped != null) {
+            mappedCurrent = position;
+        } else {
+            currentSong = getNodeAt(position);
+        }
+        currentChanged();
+        return getCurrentSong();
+    }
+
     public Song getCurrentSong() {
+        if (mapped != null) {
+            return getSong(mappedCurrent);
+        }
         return currentSong != null ? currentSong.getSong() : null;
     }
 
     public Song nextSong() {
-        if (currentSong == null || currentSong.getNext() == null) {
-            // If at the end, loop back to beginning
-            currentSong = head;
-        } else {
-            currentSong = currentSong.getNext();
+        long start = PlaylistMetrics.start();
+        try {
+            if (shufflePlay && size > 0) {
+                return moveCurrentTo(shuffledPosition(1));
+            }
+            if (mapped != null) {
+                mappedCurrent = mappedCurrent + 1 < size ? mappedCurrent + 1 : 0;
+                currentChanged();
+                return getCurrentSong();
+            }
+            if (currentSong == null || currentSong.getNext() == null) {
+                // If at the end, loop back to beginning
+                currentSong = head;
+            } else {
+                currentSong = currentSong.getNext();
+            }
+            currentChanged();
+            return getCurrentSong();
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.NEXT, start);
         }
-        return getCurrentSong();
     }
 
     public Song previousSong() {
-        if (currentSong == null || currentSong.getPrev() == null) {
-            // If at the beginning, loop to end
-            currentSong = tail;
-        } else {
-            currentSong = currentSong.getPrev();
+        long start = PlaylistMetrics.start();
+        try {
+            if (shufflePlay && size > 0) {
+                return moveCurrentTo(shuffledPosition(-1));
+            }
+            if (mapped != null) {
+                mappedCurrent = mappedCurrent > 0 ? mappedCurrent - 1 : size - 1;
+                currentChanged();
+                return getCurrentSong();
+            }
+            if (currentSong == null || currentSong.getPrev() == null) {
+                // If at the beginning, loop to end
+                currentSong = tail;
+            } else {
+                currentSong = currentSong.getPrev();
+            }
+            currentChanged();
+            return getCurrentSong();
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.PREVIOUS, start);
         }
-        return getCurrentSong();
     }
 
     // Shuffle the playlist
     public void shuffle() {
-        if (size <= 1) {
-            return;
+        shuffle(new Random().nextLong());
+    }
+
+    // Shuffle the playlist reproducibly: the same seed gives the same order.
+    // The existing nodes are relinked in place and the current song stays current.
+    public void shuffle(long seed) {
+        long start = PlaylistMetrics.start();
+        try {
+            if (size <= 1) {
+                return;
+            }
+            materialize();
+            saveVersion();
+
+            Node[] nodes = new Node[size];
+            int i = 0;
+            for (Node node = head; node != null; node = node.getNext()) {
+                nodes[i++] = node;
+            }
+
+            // Shuffle the array using Fisher-Yates algorithm
+            Random random = new Random(seed);
+            for (i = nodes.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                Node temp = nodes[i];
+                nodes[i] = nodes[j];
+                nodes[j] = temp;
+            }
+
+            // Relink the same nodes in the new order
+            Node previous = null;
+            for (Node node : nodes) {
+                node.setPrev(previous);
+                if (previous != null) {
+                    previous.setNext(node);
+                }
+                previous = node;
+            }
+            previous.setNext(null);
+            head = nodes[0];
+            tail = previous;
+            index.rebuild(head, size);
+            if (versioned) {
+                version = SongTree.build(head, size);
+            }
+
+            if (journal != null) {
+                journal.recordShuffle(this, seed);
+            }
+            fireSongsReordered();
+            fireCurrentSongChanged(); // same song, new position
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.SHUFFLE, start);
         }
+    }
 
-        // Convert linked list to array for easier shuffling
-        Song[] songs = new Song[size];
-        Node current = head;
-        int index = 0;
+    // Shuffle play: nextSong/previousSong follow a random order generated from a
+    // seed (see ShuffleOrder) while the playlist itself keeps its order. The order
+    // is computed step by step, so it costs no memory however long the playlist is.
+    public void enableShufflePlay() {
+        enableShufflePlay(new Random().nextLong());
+    }
 
-        while (current != null) {
-            songs[index++] = current.getSong();
-            current = current.getNext();
+    public void enableShufflePlay(long seed) {
+        shuffleSeed = seed;
+        shufflePlay = true;
+    }
+
+    public void disableShufflePlay() {
+        shufflePlay = false;
+    }
+
+    public boolean isShufflePlay() {
+        return shufflePlay;
+    }
+
+    public long getShuffleSeed() {
+        return shuffleSeed;
+    }
+
+    // Position that follows (step 1) or precedes (step -1) the current song in shuffle play
+    private int shuffledPosition(int step) {
+        int current = getCurrentIndex();
+        if (current < 0) {
+            return ShuffleOrder.position(shuffleSeed, size, step > 0 ? 0 : size - 1);
         }
+        int rank = ShuffleOrder.rank(shuffleSeed, size, current);
+        return ShuffleOrder.position(shuffleSeed, size, Math.floorMod(rank + step, size));
+    }
+
+    // Sort the playlist; equal songs keep their order. The current song stays current.
+    // Short playlists are merge-sorted on the node chain itself; long ones are
+    // copied to an array and sorted in parallel. Either way the existing nodes
+    // are relinked in one pass and the positional index is rebuilt in O(n).
+    public void sort(final Comparator<? super Song> comparator) {
+        long start = PlaylistMetrics.start();
+        try {
+            materialize();
+            if (size <= 1) {
+                return;
+            }
+            saveVersion();
+
+            Comparator<Node> byNodeSong = new Comparator<Node>() {
+                @Override
+                public int compare(Node a, Node b) {
+                    return comparator.compare(a.getSong(), b.getSong());
+                }
+            };
+
+            if (size < PARALLEL_SORT_THRESHOLD) {
+                head = mergeSort(head, byNodeSong);
+            } else {
+                Node[] nodes = new Node[size];
+                int i = 0;
+                for (Node node = head; node != null; node = node.getNext()) {
+                    nodes[i++] = node;
+                }
+                Arrays.parallelSort(nodes, byNodeSong); // stable
+                for (i = 0; i < nodes.length - 1; i++) {
+                    nodes[i].setNext(nodes[i + 1]);
+                }
+                nodes[nodes.length - 1].setNext(null);
+                head = nodes[0];
+            }
+
+            // Restore the prev links from the sorted next links
+            Node previous = null;
+            for (Node node = head; node != null; node = node.getNext()) {
+                node.setPrev(previous);
+                previous = node;
+            }
+            tail = previous;
+            index.rebuild(head, size);
+            if (versioned) {
+                version = SongTree.build(head, size);
+            }
 
-        // Shuffle the array using Fisher-Yates algorithm
-        Random random = new Random();
-        for (int i = songs.length - 1; i > 0; i--) {
-            int j = random.nextInt(i + 1);
-            Song temp = songs[i];
-            songs[i] = songs[j];
-            songs[j] = temp;
+            if (journal != null) {
+                journal.recordReorder(this);
+            }
+            fireSongsReordered();
+            fireCurrentSongChanged(); // same song, new position
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.SORT, start);
         }
+    }
 
-        // Rebuild the linked list with shuffled songs
-        head = null;
-        tail = null;
-        currentSong = null;
-        size = 0;
+    // Stable bottom-up merge sort of a chain linked by next pointers only;
+    // returns the new first node. Needs no extra memory.
+    private static Node mergeSort(Node list, Comparator<Node> comparator) {
+        for (int width = 1; ; width *= 2) {
+            Node p = list;
+            Node last = null;
+            list = null;
+            int merges = 0;
 
-        for (Song song : songs) {
-            addSong(song);
+            while (p != null) {
+                merges++;
+                // Split off run p of up to width nodes; run q follows it
+                Node q = p;
+                int pSize = 0;
+                while (pSize < width && q != null) {
+                    pSize++;
+                    q = q.getNext();
+                }
+                int qSize = width;
+
+                // Merge the two runs, taking from p on ties to stay stable
+                while (pSize > 0 || (qSize > 0 && q != null)) {
+                    Node next;
+                    if (pSize == 0) {
+                        next = q;
+                        q = q.getNext();
+                        qSize--;
+                    } else if (qSize == 0 || q == null || comparator.compare(p, q) <= 0) {
+                        next = p;
+                        p = p.getNext();
+                        pSize--;
+                    } else {
+                        next = q;
+                        q = q.getNext();
+                        qSize--;
+                    }
+
+                    if (last == null) {
+                        list = next;
+                    } else {
+                        last.setNext(next);
+                    }
+                    last = next;
+                }
+                p = q;
+            }
+            last.setNext(null);
+
+            if (merges <= 1) {
+                return list;
+            }
         }
     }
 
     // Move song up in the playlist
     public boolean moveSongUp(int position) {
-        if (position <= 0 || position >= size) {
-            return false;
-        }
+        long start = PlaylistMetrics.start();
+        try {
+            materialize();
+            if (position <= 0 || position >= size) {
+                return false;
+            }
+            saveVersion();
 
-        Node current = getNodeAt(position);
-        Node previous = current.getPrev();
+            Node current = getNodeAt(position);
+            Node previous = current.getPrev();
 
-        // Update links to swap nodes
-        if (previous.getPrev() != null) {
-            previous.getPrev().setNext(current);
-        } else {
-            head = current;
-        }
+            // Update links to swap nodes
+            if (previous.getPrev() != null) {
+                previous.getPrev().setNext(current);
+            } else {
+                head = current;
+            }
 
-        if (current.getNext() != null) {
-            current.getNext().setPrev(previous);
-        } else {
-            tail = previous;
+            if (current.getNext() != null) {
+                current.getNext().setPrev(previous);
+            } else {
+                tail = previous;
+            }
+
+            current.setPrev(previous.getPrev());
+            previous.setNext(current.getNext());
+            current.setNext(previous);
+            previous.setPrev(current);
+
+            index.remove(current);
+            index.insert(position - 1, current);
+            if (versioned) {
+                version = SongTree.moveRange(version, position, 1, position - 1);
+            }
+
+            if (journal != null) {
+                journal.recordMoveUp(this, position);
+            }
+            fireSongsMoved(position, 1, position - 1);
+            return true;
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.MOVE, start);
         }
+    }
+
+    // Move the count songs starting at from so that they start at position to
+    // (counted after the move). The block is cut out and spliced back in with a
+    // constant number of pointer changes, and the index is updated in O(log n).
+    public boolean moveRange(int from, int to, int count) {
+        long start = PlaylistMetrics.start();
+        try {
+            materialize();
+            if (count <= 0 || from < 0 || to < 0 || from + count > size || to + count > size) {
+                return false;
+            }
+            if (from == to) {
+                return true;
+            }
+            saveVersion();
 
-        current.setPrev(previous.getPrev());
-        previous.setNext(current.getNext());
-        current.setNext(previous);
-        previous.setPrev(current);
+            int current = getCurrentIndex();
+            Node first = index.get(from);
+            Node last = index.get(from + count - 1);
+            // The node the block will follow, found before the block is cut out
+            Node before = to == 0 ? null : index.get(to < from ? to - 1 : to + count - 1);
+
+            // Cut the block out
+            Node previous = first.getPrev();
+            Node following = last.getNext();
+            if (previous != null) {
+                previous.setNext(following);
+            } else {
+                head = following;
+            }
+            if (following != null) {
+                following.setPrev(previous);
+            } else {
+                tail = previous;
+            }
 
-        return true;
+            // Splice it back in after before
+            Node after = before != null ? before.getNext() : head;
+            first.setPrev(before);
+            last.setNext(after);
+            if (before != null) {
+                before.setNext(first);
+            } else {
+                head = first;
+            }
+            if (after != null) {
+                after.setPrev(last);
+            } else {
+                tail = last;
+            }
+            index.moveRange(from, count, to);
+            if (versioned) {
+                version = SongTree.moveRange(version, from, count, to);
+            }
+
+            if (journal != null) {
+                journal.recordMoveRange(this, from, to, count);
+            }
+            fireSongsMoved(from, count, to);
+            if (current >= Math.min(from, to) && current <= Math.max(from, to) + count - 1) {
+                fireCurrentSongChanged();
+            }
+            return true;
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.MOVE_RANGE, start);
+        }
     }
 
     // Move song down in the playlist
@@ -325,83 +1280,385 @@ public class Playlist {
         return moveSongUp(position + 1);
     }
 
-    // Save playlist to file
-    public boolean saveToFile(String filename) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filename))) {
-            // Save playlist name and size
-            oos.writeObject(name);
-            oos.writeInt(size);
-
-            // Save current song position
-            int currentPosition = -1;
-            if (currentSong != null) {
-                Node temp = head;
-                int pos = 0;
-                while (temp != null) {
-                    if (temp == currentSong) {
-                        currentPosition = pos;
-                        break;
-                    }
-                    temp = temp.getNext();
-                    pos++;
-                }
+    // The songs and current position as they are now, as an immutable list that
+    // later edits leave alone (see PlaylistSnapshot). O(1) once the persistent
+    // copy exists; the first call builds it in O(n) and from then on every
+    // structural edit updates it in O(log n).
+    public PlaylistSnapshot snapshot() {
+        materialize();
+        if (!versioned) {
+            version = SongTree.build(head, size);
+            versioned = true;
+        }
+        return new PlaylistSnapshot(name, getCurrentIndex(), version);
+    }
+
+    // Keep a history of structural edits (adds, removes, moves, shuffles, sorts
+    // and replaced songs) for undo() and redo(). Each entry is a snapshot that
+    // shares all but O(log n) of its tree with its neighbours, so the history is
+    // unlimited. Edits to a song's own fields are not part of it. The persistent
+    // copy is only built at the first edit, so a lazily opened file stays lazy.
+    public void enableUndo() {
+        if (undoHistory == null) {
+            undoHistory = new ArrayDeque<>();
+            redoHistory = new ArrayDeque<>();
+        }
+    }
+
+    public void disableUndo() {
+        undoHistory = null;
+        redoHistory = null;
+    }
+
+    public boolean canUndo() {
+        return undoHistory != null && !undoHistory.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return redoHistory != null && !redoHistory.isEmpty();
+    }
+
+    // Go back to the songs and current song from before the last edit
+    public boolean undo() {
+        long start = PlaylistMetrics.start();
+        try {
+            if (!canUndo()) {
+                return false;
             }
-            oos.writeInt(currentPosition);
+            PlaylistSnapshot previous = undoHistory.pop();
+            redoHistory.push(snapshot());
+            restore(previous);
+            return true;
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.UNDO, start);
+        }
+    }
 
-            // Save all songs
-            Node current = head;
-            while (current != null) {
-                Song song = current.getSong();
-                oos.writeObject(song.getTitle());
-                oos.writeObject(song.getArtist());
-                oos.writeObject(song.getAlbum());
-                oos.writeInt(song.getDuration());
-                current = current.getNext();
+    // Apply the last undone edit again
+    public boolean redo() {
+        long start = PlaylistMetrics.start();
+        try {
+            if (!canRedo()) {
+                return false;
             }
+            PlaylistSnapshot next = redoHistory.pop();
+            undoHistory.push(snapshot());
+            restore(next);
+            return true;
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.REDO, start);
+        }
+    }
+
+    // Called before each structural edit: remember the version it replaces
+    private void saveVersion() {
+        if (undoHistory != null) {
+            undoHistory.push(snapshot());
+            redoHistory.clear();
+        }
+    }
+
+    // Make the songs and current position those of target. Songs at the start
+    // and end that already match (by reference) are kept and only the nodes in
+    // between are replaced. The matching ends are found by comparing the two
+    // versions' trees, which share almost everything, so undoing a single add,
+    // remove or move takes O(log n).
+    private void restore(PlaylistSnapshot target) {
+        SongTree goal = target.root;
+        int goalSize = SongTree.size(goal);
+
+        int prefix = SongTree.commonLength(version, goal, false);
+        int suffix = Math.min(SongTree.commonLength(version, goal, true), Math.min(size, goalSize) - prefix);
+        Node first = index.get(prefix);
+        int removeCount = size - prefix - suffix;
+        int insertCount = goalSize - prefix - suffix;
+
+        // Drop the nodes that differ; the first matching node of the end stays
+        Node before = first != null ? first.getPrev() : tail;
+        Node after = first;
+        for (int i = 0; i < removeCount; i++) {
+            Node following = after.getNext();
+            releaseNode(after);
+            after = following;
+        }
+        if (removeCount > 0) {
+            index.removeRange(prefix, removeCount);
+        }
+
+        // Link new nodes for the target's songs in their place
+        Node chainFirst = null;
+        Node chainLast = null;
+        Iterator<Song> songs = SongTree.iterator(goal, prefix, false);
+        for (int i = 0; i < insertCount; i++) {
+            Node node = createNode(songs.next());
+            if (chainFirst == null) {
+                chainFirst = node;
+            } else {
+                chainLast.setNext(node);
+                node.setPrev(chainLast);
+            }
+            chainLast = node;
+        }
+        Node start = chainFirst != null ? chainFirst : after;
+        Node end = chainLast != null ? chainLast : before;
+        if (before != null) {
+            before.setNext(start);
+        } else {
+            head = start;
+        }
+        if (after != null) {
+            after.setPrev(end);
+        } else {
+            tail = end;
+        }
+        if (chainFirst != null) {
+            chainFirst.setPrev(before);
+            chainLast.setNext(after);
+            index.insertAll(prefix, chainFirst, insertCount);
+        }
+        size = goalSize;
+        version = goal;
+
+        int current = target.getCurrentIndex();
+        currentSong = current >= 0 && current < size ? index.get(current) : head;
+
+        if (journal != null) {
+            journal.beginBatch();
+            for (int i = prefix + removeCount - 1; i >= prefix; i--) {
+                journal.recordRemove(this, i);
+            }
+            Node node = chainFirst;
+            for (int i = 0; i < insertCount; i++, node = node.getNext()) {
+                journal.recordInsert(this, prefix + i, node.getSong());
+            }
+            journal.endBatch(this);
+        }
+        int replaced = Math.min(removeCount, insertCount);
+        if (replaced > 0) {
+            fireSongsChanged(prefix, prefix + replaced - 1);
+        }
+        if (removeCount > replaced) {
+            fireSongsRemoved(prefix + replaced, prefix + removeCount - 1);
+        }
+        if (insertCount > replaced) {
+            fireSongsInserted(prefix + replaced, prefix + insertCount - 1);
+        }
+        currentChanged();
+    }
+
+    // Save playlist to file (binary format, see PlaylistFile)
+    public boolean saveToFile(String filename) {
+        try {
+            PlaylistFile.write(this, filename);
             return true;
         } catch (IOException e) {
-            System.out.println("Error saving playlist: " + e.getMessage());
+            LOGGER.log(Level.WARNING, "Error saving playlist to " + filename, e);
             return false;
         }
     }
 
-    // Load playlist from file
+    // Load playlist from file (binary or legacy format)
     public static Playlist loadFromFile(String filename) {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filename))) {
-            // Read playlist info
-            String playlistName = (String) ois.readObject();
-            int size = ois.readInt();
-            int currentPosition = ois.readInt();
+        try {
+            return PlaylistFile.read(filename);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error loading playlist from " + filename, e);
+            return null;
+        }
+    }
 
-            Playlist playlist = new Playlist(playlistName);
+    // Start journaling edits next to basePath (see PlaylistJournal). Each later
+    // change is appended to a log instead of rewriting the whole playlist.
+    public boolean enableJournal(String basePath) {
+        materialize();
+        try {
+            closeJournal();
+            journal = PlaylistJournal.start(this, basePath);
+            return true;
+        } catch (IOException e) {
+            PlaylistMetrics.failed(PlaylistOperation.JOURNAL_WRITE, e);
+            LOGGER.log(Level.WARNING, "Error starting journal at " + basePath, e);
+            return false;
+        }
+    }
 
-            // Read and add all songs
-            for (int i = 0; i < size; i++) {
-                String title = (String) ois.readObject();
-                String artist = (String) ois.readObject();
-                String album = (String) ois.readObject();
-                int duration = ois.readInt();
+    // Write out buffered journal records and stop journaling
+    public void closeJournal() {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    public PlaylistJournal getJournal() {
+        return journal;
+    }
+
+    // Load a journaled playlist (latest snapshot plus its logs) and keep journaling
+    public static Playlist openJournaled(String basePath) {
+        try {
+            return PlaylistJournal.open(basePath);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error loading journaled playlist from " + basePath, e);
+            return null;
+        }
+    }
 
-                Song song = new Song(title, artist, album, duration);
-                playlist.addSong(song);
+    // Open a playlist file lazily: the file is memory-mapped and songs are only
+    // created when a position is read or navigated to. The first structural change
+    // (add, remove, move, shuffle) or a call to getHead() builds the full linked list.
+    // Legacy files cannot be mapped and are loaded normally.
+    public static Playlist openMapped(String filename) {
+        try {
+            return openMapped(filename, null);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error loading playlist from " + filename, e);
+            return null;
+        }
+    }
+
+    static Playlist openMapped(String filename, IoProgress progress) throws IOException {
+        if (PlaylistFile.isLegacyFile(filename)) {
+            return PlaylistFile.read(filename, progress);
+        }
+
+        long start = PlaylistMetrics.start();
+        MappedPlaylistFile file;
+        try {
+            file = MappedPlaylistFile.open(filename);
+        } catch (IOException e) {
+            PlaylistMetrics.failed(PlaylistOperation.OPEN_MAPPED, e);
+            throw e;
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.OPEN_MAPPED, start);
+        }
+        Playlist playlist = new Playlist(file.getName());
+        if (file.getSongCount() > 0) {
+            playlist.mapped = file;
+            playlist.mappedSongs = new HashMap<>();
+            playlist.size = file.getSongCount();
+            playlist.mappedCurrent = Math.max(0, Math.min(file.getCurrentPosition(), playlist.size - 1));
+        }
+        PlaylistFile.report(progress, playlist.size, playlist.size);
+        return playlist;
+    }
+
+    // Copies of all songs, for writers that run while this playlist keeps changing
+    Song[] copySongs() {
+        Song[] songs = new Song[size];
+        if (mapped != null) {
+            for (int i = 0; i < size; i++) {
+                Song song = mappedSongs.get(i);
+                songs[i] = song != null ? copy(song) : mapped.readSong(i);
+            }
+        } else {
+            int i = 0;
+            for (Node node = head; node != null; node = node.getNext()) {
+                songs[i++] = copy(node.getSong());
             }
+        }
+        return songs;
+    }
 
-            // Set current song
-            if (currentPosition >= 0) {
-                Node current = playlist.head;
-                for (int i = 0; i < currentPosition; i++) {
-                    current = current.getNext();
-                }
-                playlist.currentSong = current;
+    // The songs as they are now, for a writer on another thread (see PlaylistIO.save).
+    // Only the capture happens here, on the thread that owns the playlist: a mapped
+    // playlist hands over its read-only file plus copies of the songs decoded so
+    // far, any other playlist an immutable snapshot (O(1) once undo or an earlier
+    // snapshot has built the persistent copy). The supplier builds the array on
+    // the writer's thread. A snapshot holds the live Song objects, so a song
+    // edited while the writer runs may be saved with its old or its new fields.
+    Supplier<Song[]> songsToWrite() {
+        if (mapped == null) {
+            final PlaylistSnapshot snapshot = snapshot();
+            return () -> snapshot.toArray(new Song[0]);
+        }
+
+        final MappedPlaylistFile file = mapped;
+        final int count = size;
+        final Map<Integer, Song> decoded = new HashMap<>();
+        for (Map.Entry<Integer, Song> entry : mappedSongs.entrySet()) {
+            Song song = entry.getValue();
+            decoded.put(entry.getKey(),
+                    Song.withInternedNames(song.getTitle(), song.getArtist(), song.getAlbum(), song.getDuration()));
+        }
+        return () -> {
+            Song[] songs = new Song[count];
+            for (int i = 0; i < count; i++) {
+                Song song = decoded.get(i);
+                songs[i] = song != null ? song : file.readSong(i);
             }
+            return songs;
+        };
+    }
 
-            return playlist;
-        } catch (IOException | ClassNotFoundException e) {
-            System.out.println("Error loading playlist: " + e.getMessage());
-            return null;
+    private static Song copy(Song song) {
+        return new Song(song.getTitle(), song.getArtist(), song.getAlbum(), song.getDuration());
+    }
+
+    // Song at position of a mapped playlist, decoded on first access
+    private Song mappedSong(int position) {
+        Song song = mappedSongs.get(position);
+        if (song == null) {
+            song = mapped.readSong(position);
+            song.addSongListener(mappedSongListener);
+            mappedSongs.put(position, song);
+        }
+        return song;
+    }
+
+    // Append a node to the chain only; callers rebuild the index afterwards
+    private void linkLast(Node node) {
+        if (head == null) {
+            head = node;
+        } else {
+            tail.setNext(node);
+            node.setPrev(tail);
         }
+        tail = node;
     }
 
+    // Build the linked list for a playlist that is still backed by a mapped file
+    private void materialize() {
+        if (mapped == null) {
+            return;
+        }
+
+        MappedPlaylistFile file = mapped;
+        int count = size;
+        mapped = null;
+        stats.clear();
+        mappedStatsLoaded = false;
+
+        final Node[] nodes = mappedSearchIndex != null ? new Node[count] : null;
+        for (int i = 0; i < count; i++) {
+            Song song = mappedSongs.remove(i);
+            if (song != null) {
+                song.removeSongListener(mappedSongListener);
+            } else {
+                song = file.readSong(i);
+            }
+
+            linkLast(createNode(song));
+            if (nodes != null) {
+                nodes[i] = tail;
+            }
+        }
+
+        if (nodes != null) {
+            // Reuse the words already indexed by position
+            searchIndex = mappedSearchIndex.convert(new Function<Integer, Node>() {
+                @Override
+                public Node apply(Integer position) {
+                    return nodes[position];
+                }
+            });
+            mappedSearchIndex = null;
+        }
+        mappedSongs = null;
+        index.rebuild(head, count);
+        currentSong = index.get(mappedCurrent);
+        mappedCurrent = -1;
+    }
     // Getters
     public String getName() {
         return name;
@@ -411,8 +1668,135 @@ public class Playlist {
         return size;
     }
 
+    // Position of the current song, or -1 if there is none
+    public int getCurrentIndex() {
+        if (mapped != null) {
+            return mappedCurrent;
+        }
+        return currentSong != null ? index.indexOf(currentSong) : -1;
+    }
+
+    // On a mapped playlist the first call reads every record (PlaylistIO.load
+    // makes it in the background); after that the stats are kept up to date
+    public PlaylistStats getStats() {
+        if (mapped != null && !mappedStatsLoaded) {
+            // Aggregate straight from the file records, without creating songs
+            for (int i = 0; i < size; i++) {
+                Song song = mappedSongs.get(i);
+                if (song != null) {
+                    stats.add(song);
+                } else {
+                    stats.add(mapped.readArtist(i), mapped.readAlbum(i), mapped.readDuration(i));
+                }
+            }
+            mappedStatsLoaded = true;
+        }
+        return stats;
+    }
+
     // Setters
     public void setName(String name) {
         this.name = name;
+        if (journal != null) {
+            journal.recordName(this, name);
+        }
+    }
+
+    private void currentChanged() {
+        if (journal != null) {
+            journal.recordCurrent(this, getCurrentIndex());
+        }
+        fireCurrentSongChanged();
+    }
+
+    // Listeners
+    public void addPlaylistListener(PlaylistListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removePlaylistListener(PlaylistListener listener) {
+        listeners.remove(listener);
+    }
+
+    // The changes to this playlist as a Flow.Publisher of typed events, with
+    // bounded, coalescing buffers per subscriber (see PlaylistEventPublisher)
+    public PlaylistEventPublisher getEventPublisher() {
+        if (eventPublisher == null) {
+            setEventPublisher(new PlaylistEventPublisher());
+        }
+        return eventPublisher;
+    }
+
+    // Publish to this publisher instead, e.g. one delivering on the Swing thread
+    public void setEventPublisher(PlaylistEventPublisher publisher) {
+        eventPublisher = publisher;
+        publishedSize = size;
+    }
+
+    private void fireSongsInserted(int fromIndex, int toIndex) {
+        for (PlaylistListener listener : listeners) {
+            listener.songsInserted(this, fromIndex, toIndex);
+        }
+        publish(PlaylistEvent.Type.INSERTED, fromIndex, toIndex, -1);
+    }
+
+    private void fireSongsRemoved(int fromIndex, int toIndex) {
+        for (PlaylistListener listener : listeners) {
+            listener.songsRemoved(this, fromIndex, toIndex);
+        }
+        publish(PlaylistEvent.Type.REMOVED, fromIndex, toIndex, -1);
+    }
+
+    private void fireSongsChanged(int fromIndex, int toIndex) {
+        for (PlaylistListener listener : listeners) {
+            listener.songsChanged(this, fromIndex, toIndex);
+        }
+        publish(PlaylistEvent.Type.CHANGED, fromIndex, toIndex, -1);
+    }
+
+    // Songs [from, from + count) now start at to; listeners see every row in between change
+    private void fireSongsMoved(int from, int count, int to) {
+        int low = Math.min(from, to);
+        int high = Math.max(from, to) + count - 1;
+        for (PlaylistListener listener : listeners) {
+            listener.songsChanged(this, low, high);
+        }
+        publish(PlaylistEvent.Type.MOVED, from, from + count - 1, to);
+    }
+
+    // The whole playlist was shuffled or sorted
+    private void fireSongsReordered() {
+        for (PlaylistListener listener : listeners) {
+            listener.songsChanged(this, 0, size - 1);
+        }
+        publish(PlaylistEvent.Type.REORDERED, 0, size - 1, -1);
+    }
+
+    private void fireCurrentSongChanged() {
+        for (PlaylistListener listener : listeners) {
+            listener.currentSongChanged(this);
+        }
+        if (eventPublisher != null) {
+            int current = getCurrentIndex();
+            publish(PlaylistEvent.Type.CURRENT_CHANGED, current, current, -1);
+        }
+    }
+
+    // Some edits (removeIf, undo) report several ranges once they are done,
+    // so the size each event leaves is counted here rather than read from size
+    private void publish(PlaylistEvent.Type type, int fromIndex, int toIndex, int destination) {
+        if (eventPublisher == null) {
+            return;
+        }
+        if (type == PlaylistEvent.Type.INSERTED) {
+            publishedSize += toIndex - fromIndex + 1;
+        } else if (type == PlaylistEvent.Type.REMOVED) {
+            publishedSize -= toIndex - fromIndex + 1;
+        }
+        eventPublisher.publish(new PlaylistEvent(type, fromIndex, toIndex, destination, publishedSize));
+    }
+
+    void setJournal(PlaylistJournal journal) {
+        this.journal = journal;
     }
 }
\ No newline at end of file
@@ -0,0 +1,518 @@
+// PlaylistBenchmark.java
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+// Micro-benchmarks for the Playlist operations, using only the JDK: the
+// fallback for the JMH benchmarks in src/jmh/java (benchmarks.PlaylistBenchmarks)
+// where Gradle is not available. PlaylistWorkload, which those benchmarks
+// run, builds its playlists with createPlaylist and createSongs.
+//
+//   java PlaylistBenchmark [-s 10,1000,100000] [-b getSong,shuffle] [-t 200] [-i 5] [--csv]
+//
+// -s  playlist sizes (default 10,1000,100000,1000000; 10000000 needs -Xmx4g or so)
+// -b  benchmarks to run, by name (default: all)
+// -t  milliseconds per measured iteration
+// -i  measured iterations; as many warm-up iterations run before them
+// --csv  print comma-separated rows, e.g. to keep a baseline and diff a later run
+//
+// Each iteration times a batch of operations, sized so the batch takes about
+// -t milliseconds, and reports nanoseconds per operation as the mean and
+// standard deviation over the iterations. Allocation is read from the
+// thread's allocated-bytes counter around the timed batches, which gives
+// bytes per operation and the allocation rate in MB/s. Anything a batch
+// changes is put back between batches, outside the timed section, so every
+// batch sees a playlist of the same size. Inputs a batch needs, such as the
+// songs to add, are created before it starts.
+public class PlaylistBenchmark {
+    private static final String DEFAULT_SIZES = "10,1000,100000,1000000";
+    private static final long MIN_BATCH_NANOS = 1000000; // shortest batch worth timing
+
+    // Results are folded into this so the JIT cannot drop the measured work
+    private static volatile long sink;
+
+    // One benchmarked operation on a playlist of a given size
+    abstract static class Benchmark {
+        final String name;
+        Playlist playlist;
+        int size;
+        private long random = 0x9E3779B97F4A7C15L;
+
+        Benchmark(String name) {
+            this.name = name;
+        }
+
+        void setup(int size) throws IOException {
+            this.size = size;
+            playlist = createPlaylist("Benchmark", size);
+        }
+
+        // Get ready for the next run(ops), e.g. allocate its inputs; not timed
+        void prepare(int ops) {
+        }
+
+        // Run ops operations and return something derived from their results
+        abstract long run(int ops) throws IOException;
+
+        // Undo whatever the last run(ops) changed; not timed
+        void restore(int ops) {
+        }
+
+        // Largest batch this benchmark can run before restore is needed
+        int maxOps() {
+            return Integer.MAX_VALUE;
+        }
+
+        void tearDown() {
+            playlist = null;
+        }
+
+        // Cheap pseudo-random position in [0, bound)
+        int nextPosition(int bound) {
+            random ^= random << 13;
+            random ^= random >>> 7;
+            random ^= random << 17;
+            return (int) ((random >>> 1) % bound);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String sizes = DEFAULT_SIZES;
+        String only = null;
+        long iterationMillis = 200;
+        int iterations = 5;
+        boolean csv = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-s") && i + 1 < args.length) {
+                sizes = args[++i];
+            } else if (args[i].equals("-b") && i + 1 < args.length) {
+                only = "," + args[++i] + ",";
+            } else if (args[i].equals("-t") && i + 1 < args.length) {
+                iterationMillis = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-i") && i + 1 < args.length) {
+                iterations = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--csv")) {
+                csv = true;
+            } else {
+                System.out.println("Usage: java PlaylistBenchmark [-s sizes] [-b names] [-t millis] [-i iterations] [--csv]");
+                return;
+            }
+        }
+
+        AllocationCounter allocation = new AllocationCounter();
+        if (!allocation.isSupported()) {
+            System.out.println("Note: this JVM does not report allocated bytes; allocation columns are blank");
+        }
+        if (csv) {
+            System.out.println("benchmark,size,ns_per_op,ns_error,bytes_per_op,alloc_mb_per_s");
+        } else {
+            System.out.println(String.format(Locale.ROOT, "%-18s %10s %16s %12s %14s %12s",
+                    "Benchmark", "Size", "ns/op", "+/-", "bytes/op", "alloc MB/s"));
+        }
+
+        for (Benchmark benchmark : createBenchmarks()) {
+            if (only != null && !only.contains("," + benchmark.name + ",")) {
+                continue;
+            }
+            for (String value : sizes.split(",")) {
+                int size = Integer.parseInt(value.trim());
+                try {
+                    benchmark.setup(size);
+                    measure(benchmark, iterationMillis * 1000000L, iterations, allocation, csv);
+                } catch (IOException e) {
+                    System.out.println("Error in benchmark " + benchmark.name + ": " + e.getMessage());
+                } catch (OutOfMemoryError e) {
+                    benchmark.tearDown();
+                    System.out.println("Out of memory for " + benchmark.name + " at size " + size + "; run with a larger -Xmx");
+                }
+                benchmark.tearDown();
+            }
+        }
+    }
+
+    private static void measure(Benchmark benchmark, long iterationNanos, int iterations,
+            AllocationCounter allocation, boolean csv) throws IOException {
+        // Grow the batch until it takes long enough to time, then scale it to the iteration length
+        int ops = 1;
+        long elapsed = timeBatch(benchmark, ops);
+        while (elapsed < MIN_BATCH_NANOS && ops < benchmark.maxOps()) {
+            ops = (int) Math.min((long) ops * 2, benchmark.maxOps());
+            elapsed = timeBatch(benchmark, ops);
+        }
+        int batchesPerIteration = (int) Math.max(1, iterationNanos / Math.max(elapsed, 1));
+
+        for (int i = 0; i < iterations; i++) {
+            runIteration(benchmark, ops, batchesPerIteration, allocation, null);
+        }
+
+        double[] nanosPerOp = new double[iterations];
+        long allocated = 0;
+        long totalNanos = 0;
+        long totalOps = 0;
+        long[] iteration = new long[2];
+        for (int i = 0; i < iterations; i++) {
+            runIteration(benchmark, ops, batchesPerIteration, allocation, iteration);
+            long iterationOps = (long) ops * batchesPerIteration;
+            nanosPerOp[i] = (double) iteration[0] / iterationOps;
+            totalNanos += iteration[0];
+            allocated += iteration[1];
+            totalOps += iterationOps;
+        }
+
+        double mean = 0;
+        for (double value : nanosPerOp) {
+            mean += value;
+        }
+        mean /= iterations;
+        double variance = 0;
+        for (double value : nanosPerOp) {
+            variance += (value - mean) * (value - mean);
+        }
+        double error = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+
+        String bytesPerOp = "";
+        String allocRate = "";
+        if (allocation.isSupported()) {
+            bytesPerOp = String.format(Locale.ROOT, "%.1f", (double) allocated / totalOps);
+            allocRate = String.format(Locale.ROOT, "%.1f", allocated / 1048576.0 / (totalNanos / 1e9));
+        }
+        if (csv) {
+            System.out.println(String.format(Locale.ROOT, "%s,%d,%.1f,%.1f,%s,%s",
+                    benchmark.name, benchmark.size, mean, error, bytesPerOp, allocRate));
+        } else {
+            System.out.println(String.format(Locale.ROOT, "%-18s %10d %16.1f %12.1f %14s %12s",
+                    benchmark.name, benchmark.size, mean, error, bytesPerOp, allocRate));
+        }
+    }
+
+    // Time batches; result[0] gets the timed nanoseconds and result[1] the bytes allocated in them
+    private static void runIteration(Benchmark benchmark, int ops, int batches,
+            AllocationCounter allocation, long[] result) throws IOException {
+        long nanos = 0;
+        long bytes = 0;
+        for (int b = 0; b < batches; b++) {
+            benchmark.prepare(ops);
+            long allocatedBefore = allocation.allocatedBytes();
+            long start = System.nanoTime();
+            sink += benchmark.run(ops);
+            long end = System.nanoTime();
+            long allocatedAfter = allocation.allocatedBytes();
+            benchmark.restore(ops);
+            nanos += end - start;
+            bytes += allocatedAfter - allocatedBefore;
+        }
+        if (result != null) {
+            result[0] = nanos;
+            result[1] = bytes;
+        }
+    }
+
+    private static long timeBatch(Benchmark benchmark, int ops) throws IOException {
+        benchmark.prepare(ops);
+        long start = System.nanoTime();
+        sink += benchmark.run(ops);
+        long elapsed = System.nanoTime() - start;
+        benchmark.restore(ops);
+        return elapsed;
+    }
+
+    static Playlist createPlaylist(String name, int size) {
+        Playlist playlist = new Playlist(name);
+        List<Song> songs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            songs.add(createSong(i));
+        }
+        playlist.addAll(songs, 0);
+        return playlist;
+    }
+
+    static Song createSong(int i) {
+        return new Song("Song " + i, "Artist " + (i % 500), "Album " + (i % 2000), 120 + i % 240);
+    }
+
+    // A new song for every add, so adding one never pays for the listeners
+    // an earlier add registered on the same song
+    static Song[] createSongs(int count) {
+        Song[] songs = new Song[count];
+        for (int i = 0; i < count; i++) {
+            songs[i] = createSong(-1 - i);
+        }
+        return songs;
+    }
+
+    private static List<Benchmark> createBenchmarks() {
+        List<Benchmark> benchmarks = new ArrayList<>();
+
+        benchmarks.add(new Benchmark("addSong") {
+            private Song[] songs;
+
+            @Override
+            void prepare(int ops) {
+                songs = createSongs(ops);
+            }
+
+            @Override
+            long run(int ops) {
+                for (int i = 0; i < ops; i++) {
+                    playlist.addSong(songs[i]);
+                }
+                return playlist.getSize();
+            }
+
+            @Override
+            void restore(int ops) {
+                for (int i = 0; i < ops; i++) {
+                    playlist.removeSong(playlist.getSize() - 1);
+                }
+            }
+        });
+
+        benchmarks.add(new Benchmark("addSongAt") {
+            private Song[] songs;
+
+            @Override
+            void prepare(int ops) {
+                songs = createSongs(ops);
+            }
+
+            @Override
+            long run(int ops) {
+                for (int i = 0; i < ops; i++) {
+                    playlist.addSongAt(songs[i], nextPosition(playlist.getSize() + 1));
+                }
+                return playlist.getSize();
+            }
+
+            @Override
+            void restore(int ops) {
+                final Set<Song> added = Collections.newSetFromMap(new IdentityHashMap<Song, Boolean>());
+                added.addAll(Arrays.asList(songs));
+                playlist.removeIf(added::contains);
+            }
+        });
+
+        benchmarks.add(new Benchmark("removeSong") {
+            @Override
+            long run(int ops) {
+                for (int i = 0; i < ops; i++) {
+                    playlist.removeSong(nextPosition(playlist.getSize()));
+                }
+                return playlist.getSize();
+            }
+
+            @Override
+            void restore(int ops) {
+                for (int i = 0; i < ops; i++) {
+                    playlist.addSong(createSong(i));
+                }
+            }
+
+            @Override
+            int maxOps() {
+                return Math.max(1, size / 2);
+            }
+        });
+
+        benchmarks.add(new Benchmark("getSong") {
+            @Override
+            long run(int ops) {
+                long hash = 0;
+                for (int i = 0; i < ops; i++) {
+                    hash += playlist.getSong(nextPosition(size)).getDuration();
+                }
+                return hash;
+            }
+        });
+
+        benchmarks.add(new Benchmark("moveSongUp") {
+            @Override
+            long run(int ops) {
+                for (int i = 0; i < ops; i++) {
+                    playlist.moveSongUp(1 + nextPosition(size - 1));
+                }
+                return playlist.getCurrentIndex();
+            }
+
+            @Override
+            void setup(int size) throws IOException {
+                super.setup(Math.max(size, 2));
+            }
+        });
+
+        benchmarks.add(new Benchmark("shuffle") {
+            private long seed;
+
+            @Override
+            long run(int ops) {
+                for (int i = 0; i < ops; i++) {
+                    playlist.shuffle(seed++);
+                }
+                return playlist.getCurrentIndex();
+            }
+        });
+
+        benchmarks.add(new Benchmark("getTotalDuration") {
+            @Override
+            long run(int ops) {
+                long total = 0;
+                for (int i = 0; i < ops; i++) {
+                    total += playlist.getTotalDuration();
+                }
+                return total;
+            }
+        });
+
+        // One pass over every song, summing durations, per op
+        benchmarks.add(new Benchmark("stream") {
+            @Override
+            long run(int ops) {
+                long total = 0;
+                for (int i = 0; i < ops; i++) {
+                    total += playlist.stream().mapToLong(Song::getDuration).sum();
+                }
+                return total;
+            }
+        });
+
+        benchmarks.add(new Benchmark("parallelStream") {
+            @Override
+            long run(int ops) {
+                long total = 0;
+                for (int i = 0; i < ops; i++) {
+                    total += playlist.parallelStream().mapToLong(Song::getDuration).sum();
+                }
+                return total;
+            }
+        });
+
+        benchmarks.add(new Benchmark("saveLoad") {
+            private File file;
+
+            @Override
+            void setup(int size) throws IOException {
+                super.setup(size);
+                file = File.createTempFile("playlist-benchmark", ".dat");
+                file.deleteOnExit();
+            }
+
+            // One save followed by one load of the whole playlist
+            @Override
+            long run(int ops) throws IOException {
+                long total = 0;
+                for (int i = 0; i < ops; i++) {
+                    if (!playlist.saveToFile(file.getPath())) {
+                        throw new IOException("save failed");
+                    }
+                    Playlist loaded = Playlist.loadFromFile(file.getPath());
+                    if (loaded == null) {
+                        throw new IOException("load failed");
+                    }
+                    total += loaded.getSize();
+                }
+                return total;
+            }
+
+            @Override
+            void tearDown() {
+                super.tearDown();
+                if (file != null) {
+                    file.delete();
+                }
+            }
+        });
+
+        benchmarks.add(new Benchmark("modelRefresh") {
+            private static final int VISIBLE_ROWS = 30;
+            private PlaylistListModel model;
+            private Playlist other;
+            private long events;
+
+            @Override
+            void setup(int size) throws IOException {
+                super.setup(size);
+                other = createPlaylist("Other", size);
+                model = new PlaylistListModel(playlist);
+                model.addListDataListener(new ListDataListener() {
+                    @Override
+                    public void intervalAdded(ListDataEvent e) {
+                        events++;
+                    }
+
+                    @Override
+                    public void intervalRemoved(ListDataEvent e) {
+                        events++;
+                    }
+
+                    @Override
+                    public void contentsChanged(ListDataEvent e) {
+                        events++;
+                    }
+                });
+            }
+
+            // Switch the model to the other playlist and read the rows a list would paint
+            @Override
+            long run(int ops) {
+                long hash = 0;
+                for (int i = 0; i < ops; i++) {
+                    Playlist next = model.getPlaylist() == playlist ? other : playlist;
+                    model.setPlaylist(next);
+                    int rows = Math.min(VISIBLE_ROWS, model.getSize());
+                    for (int row = 0; row < rows; row++) {
+                        hash += model.getElementAt(row).getDuration();
+                    }
+                }
+                return hash + events;
+            }
+
+            @Override
+            void tearDown() {
+                super.tearDown();
+                model = null;
+                other = null;
+            }
+        });
+
+        return benchmarks;
+    }
+
+    // Bytes allocated by the current thread, where the JVM can report them
+    static class AllocationCounter {
+        private final com.sun.management.ThreadMXBean threads;
+
+        AllocationCounter() {
+            com.sun.management.ThreadMXBean found = null;
+            try {
+                java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+                if (bean instanceof com.sun.management.ThreadMXBean) {
+                    found = (com.sun.management.ThreadMXBean) bean;
+                    if (found.isThreadAllocatedMemorySupported()) {
+                        found.setThreadAllocatedMemoryEnabled(true);
+                    } else {
+                        found = null;
+                    }
+                }
+            } catch (UnsupportedOperationException | NoClassDefFoundError e) {
+                found = null;
+            }
+            threads = found;
+        }
+
+        boolean isSupported() {
+            return threads != null;
+        }
+
+        long allocatedBytes() {
+            return threads != null ? threads.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+        }
+    }
+}
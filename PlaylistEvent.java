@@ -0,0 +1,124 @@
+// PlaylistEvent.java
+
+// One change to a playlist, as delivered by PlaylistEventPublisher.
+//
+// Ranges are inclusive and, like PlaylistListener's, refer to positions after
+// the change (for removals: where the songs used to be). getSize() is the
+// playlist's size once the change was made.
+public final class PlaylistEvent {
+    public enum Type {
+        // Songs [from, to] were added
+        INSERTED,
+        // The songs that were at [from, to] were removed
+        REMOVED,
+        // Songs in [from, to] were replaced or edited
+        CHANGED,
+        // The songs at [from, to] were moved to start at getDestination()
+        MOVED,
+        // The whole playlist [0, size - 1] was shuffled or sorted
+        REORDERED,
+        // The current song is now the one at from (== to), or none if -1
+        CURRENT_CHANGED,
+        // More changed than a slow subscriber's buffer could describe; read
+        // the playlist again. The range covers the whole playlist.
+        INVALIDATED
+    }
+
+    private final Type type;
+    private final int fromIndex;
+    private final int toIndex;
+    private final int destination;
+    private final int size;
+
+    PlaylistEvent(Type type, int fromIndex, int toIndex, int destination, int size) {
+        this.type = type;
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+        this.destination = destination;
+        this.size = size;
+    }
+
+    static PlaylistEvent invalidated(int size) {
+        return new PlaylistEvent(Type.INVALIDATED, 0, size - 1, -1, size);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getFromIndex() {
+        return fromIndex;
+    }
+
+    public int getToIndex() {
+        return toIndex;
+    }
+
+    // Number of songs in the range
+    public int getCount() {
+        return toIndex - fromIndex + 1;
+    }
+
+    // Where a MOVED range starts now, -1 for other events
+    public int getDestination() {
+        return destination;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    // A single event with the effect of this one followed by next, or null if
+    // the two cannot be described as one. Lets a burst of adds, removes or
+    // edits at one place reach a slow subscriber as one event.
+    PlaylistEvent mergeWith(PlaylistEvent next) {
+        if (type == Type.INVALIDATED) {
+            // Re-reading the playlist picks up every later change as well
+            return invalidated(next.size);
+        }
+        if (next.type == Type.INVALIDATED) {
+            return next;
+        }
+        if (type == Type.REORDERED && next.type == Type.REORDERED) {
+            // Only the latest order matters
+            return next;
+        }
+        if (type != next.type) {
+            return null;
+        }
+        switch (type) {
+            case INSERTED:
+                // The new songs land inside or right after the ones just inserted
+                if (next.fromIndex >= fromIndex && next.fromIndex <= toIndex + 1) {
+                    return new PlaylistEvent(type, fromIndex, toIndex + next.getCount(), -1, next.size);
+                }
+                return null;
+            case REMOVED:
+                // The removed songs were next to, or around, the ones just removed
+                if (next.fromIndex <= fromIndex && fromIndex <= next.toIndex + 1) {
+                    return new PlaylistEvent(type, next.fromIndex, next.toIndex + getCount(), -1, next.size);
+                }
+                return null;
+            case CHANGED:
+                if (next.fromIndex <= toIndex + 1 && next.toIndex >= fromIndex - 1) {
+                    return new PlaylistEvent(type, Math.min(fromIndex, next.fromIndex),
+                            Math.max(toIndex, next.toIndex), -1, next.size);
+                }
+                return null;
+            case CURRENT_CHANGED:
+                // Only the latest current song matters
+                return next;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        String range = "[" + fromIndex + ", " + toIndex + "]";
+        if (type == Type.MOVED) {
+            range += " -> " + destination;
+        }
+        return type + " " + range + ", size " + size;
+    }
+}
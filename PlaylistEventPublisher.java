@@ -0,0 +1,211 @@
+// PlaylistEventPublisher.java
+import java.util.ArrayDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Publishes a playlist's changes as a stream of PlaylistEvents
+// (java.util.concurrent.Flow), for consumers that keep their own copy in
+// step: views, indexes, journals, remote replicas.
+//
+//   playlist.getEventPublisher().subscribe(subscriber);
+//
+// Publishing never blocks the thread changing the playlist. Each subscriber
+// gets its own buffer of at most bufferSize events, delivered on the
+// executor as it requests them, as many per run as it has asked for. While
+// events wait, a burst of adds, removes or edits at one place is coalesced
+// into one event (see PlaylistEvent.mergeWith), and repeated current-song
+// changes into the latest. If a subscriber still falls bufferSize events
+// behind, its buffer is replaced by a single INVALIDATED event telling it to
+// read the playlist again, which also absorbs the events published until it
+// is delivered. A slow subscriber costs bounded memory and never holds up
+// the playlist or the other subscribers.
+public class PlaylistEventPublisher implements Flow.Publisher<PlaylistEvent> {
+    private static final Logger LOGGER = Logger.getLogger(PlaylistEventPublisher.class.getName());
+
+    public static final int DEFAULT_BUFFER_SIZE = 256;
+
+    private final Executor executor;
+    private final int bufferSize;
+    private final CopyOnWriteArrayList<EventSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    // Deliver on the common ForkJoinPool
+    public PlaylistEventPublisher() {
+        this(ForkJoinPool.commonPool(), DEFAULT_BUFFER_SIZE);
+    }
+
+    // Deliver on executor, e.g. SwingUtilities::invokeLater for a GUI subscriber
+    public PlaylistEventPublisher(Executor executor, int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+        }
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super PlaylistEvent> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        EventSubscription subscription = new EventSubscription(subscriber);
+        subscriptions.add(subscription);
+        subscriber.onSubscribe(subscription);
+        if (closed) {
+            subscription.complete();
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    // Called by the playlist after each change
+    void publish(PlaylistEvent event) {
+        for (EventSubscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    // Complete every subscriber once it has received the events already published
+    public void close() {
+        closed = true;
+        for (EventSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    private class EventSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super PlaylistEvent> subscriber;
+        private final AtomicInteger pendingRuns = new AtomicInteger();
+
+        // Guarded by this
+        private final ArrayDeque<PlaylistEvent> buffer = new ArrayDeque<>();
+        private long demand;
+        private boolean completing;
+        private Throwable error;
+
+        private volatile boolean done;
+
+        EventSubscription(Flow.Subscriber<? super PlaylistEvent> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(PlaylistEvent event) {
+            synchronized (this) {
+                if (done || completing) {
+                    return;
+                }
+                PlaylistEvent last = buffer.peekLast();
+                PlaylistEvent merged = last != null ? last.mergeWith(event) : null;
+                if (merged != null) {
+                    buffer.pollLast();
+                    buffer.addLast(merged);
+                } else if (buffer.size() < bufferSize) {
+                    buffer.addLast(event);
+                } else {
+                    buffer.clear();
+                    buffer.addLast(PlaylistEvent.invalidated(event.getSize()));
+                }
+            }
+            schedule();
+        }
+
+        void complete() {
+            synchronized (this) {
+                completing = true;
+            }
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (n <= 0) {
+                    // Flow rule 3.9
+                    error = new IllegalArgumentException("Requested " + n + " events");
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+            subscriptions.remove(this);
+            synchronized (this) {
+                buffer.clear();
+            }
+        }
+
+        private void schedule() {
+            if (pendingRuns.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    pendingRuns.set(0);
+                    LOGGER.log(Level.WARNING, "Error delivering playlist events", e);
+                }
+            }
+        }
+
+        // Deliver what the subscriber asked for; only ever runs on one thread at a time
+        @Override
+        public void run() {
+            int runs = pendingRuns.get();
+            while (true) {
+                deliver();
+                runs = pendingRuns.addAndGet(-runs);
+                if (runs == 0) {
+                    return;
+                }
+            }
+        }
+
+        private void deliver() {
+            while (!done) {
+                PlaylistEvent event;
+                Throwable failure;
+                boolean finished = false;
+                synchronized (this) {
+                    failure = error;
+                    event = failure == null && demand > 0 ? buffer.pollFirst() : null;
+                    if (event != null) {
+                        demand--;
+                    } else if (failure == null && completing && buffer.isEmpty()) {
+                        finished = true;
+                    }
+                }
+
+                if (failure != null) {
+                    cancel();
+                    subscriber.onError(failure);
+                    return;
+                }
+                if (finished) {
+                    cancel();
+                    subscriber.onComplete();
+                    return;
+                }
+                if (event == null) {
+                    return;
+                }
+                try {
+                    subscriber.onNext(event);
+                } catch (RuntimeException e) {
+                    // Flow rule 2.13: a failing subscriber is dropped
+                    cancel();
+                    LOGGER.log(Level.WARNING, "Playlist event subscriber failed and was cancelled", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,384 @@
+// PlaylistFile.java
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+// Binary playlist file format.
+//
+// Layout (big-endian):
+//   int    magic 'MPLB'
+//   short  version
+//   string playlist name
+//   int    song count
+//   int    current song position (-1 if none)
+//   int    string count
+//   string * string count              dictionary of titles, artists and albums
+//   (int title, int artist, int album, int duration) * song count
+//
+// A string is an int byte length followed by UTF-8 bytes; length -1 means null.
+// Song records refer to dictionary entries by index, so a repeated artist or
+// album is stored once, and every record has the same fixed width.
+//
+// Files written by the old ObjectOutputStream based saveToFile are detected by
+// their stream header and still load.
+//
+// Writes go to a temporary file that replaces the target only once complete.
+// Long reads and writes report to an optional IoProgress and stop with an
+// InterruptedIOException when their thread is interrupted.
+public class PlaylistFile {
+    static final int MAGIC = 0x4D504C42; // "MPLB"
+    static final short VERSION = 1;
+    static final int RECORD_SIZE = 16;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final short LEGACY_MAGIC = (short) 0xACED; // java.io serialization stream
+    private static final int PROGRESS_EVERY = 4096; // songs between progress and cancellation checks
+
+    // Write a playlist in the binary format
+    public static void write(Playlist playlist, String filename) throws IOException {
+        Song[] songs = playlist.stream().toArray(Song[]::new);
+        write(filename, playlist.getName(), playlist.getCurrentIndex(), songs, null);
+    }
+
+    // Write the given playlist contents in the binary format and force them to disk
+    static void write(String filename, String name, int currentPosition, Song[] songs, IoProgress progress)
+            throws IOException {
+        long start = PlaylistMetrics.start();
+        try {
+            writeFile(filename, name, currentPosition, songs, progress);
+        } catch (IOException e) {
+            PlaylistMetrics.failed(PlaylistOperation.SAVE, e);
+            throw e;
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.SAVE, start);
+        }
+    }
+
+    private static void writeFile(String filename, String name, int currentPosition, Song[] songs,
+            IoProgress progress) throws IOException {
+        int size = songs.length;
+        Map<String, Integer> ids = new HashMap<>();
+        String[] strings = new String[Math.max(16, size)];
+        int stringCount = 0;
+        int[] records = new int[size * 4];
+
+        // First pass: assign dictionary ids
+        int r = 0;
+        for (Song song : songs) {
+            String[] fields = { song.getTitle(), song.getArtist(), song.getAlbum() };
+            for (String field : fields) {
+                int id = -1;
+                if (field != null) {
+                    Integer existing = ids.get(field);
+                    if (existing == null) {
+                        if (stringCount == strings.length) {
+                            strings = java.util.Arrays.copyOf(strings, stringCount * 2);
+                        }
+                        existing = stringCount;
+                        strings[stringCount++] = field;
+                        ids.put(field, existing);
+                    }
+                    id = existing;
+                }
+                records[r++] = id;
+            }
+            records[r++] = song.getDuration();
+        }
+
+        Path target = Paths.get(filename);
+        Path temp = Paths.get(filename + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.putInt(MAGIC);
+            out.putShort(VERSION);
+            out.putString(name);
+            out.putInt(size);
+            out.putInt(currentPosition);
+            out.putInt(stringCount);
+            for (int i = 0; i < stringCount; i++) {
+                out.putString(strings[i]);
+            }
+            for (int i = 0; i < size; i++) {
+                if (i % PROGRESS_EVERY == 0) {
+                    report(progress, i, size);
+                }
+                for (int field = 0; field < 4; field++) {
+                    out.putInt(records[i * 4 + field]);
+                }
+            }
+            out.flush();
+            channel.force(false);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        report(progress, size, size);
+    }
+
+    // Read a playlist in either the binary or the legacy format
+    public static Playlist read(String filename) throws IOException {
+        return read(filename, null);
+    }
+
+    static Playlist read(String filename, IoProgress progress) throws IOException {
+        long start = PlaylistMetrics.start();
+        try {
+            return readFile(filename, progress);
+        } catch (IOException e) {
+            PlaylistMetrics.failed(PlaylistOperation.LOAD, e);
+            throw e;
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.LOAD, start);
+        }
+    }
+
+    private static Playlist readFile(String filename, IoProgress progress) throws IOException {
+        Path path = Paths.get(filename);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Input in = new Input(channel);
+            if (channel.size() >= 2 && in.peekShort() == LEGACY_MAGIC) {
+                return readLegacy(filename, progress);
+            }
+
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a playlist file: " + filename);
+            }
+            short version = in.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported playlist file version " + version);
+            }
+
+            Playlist playlist = new Playlist(in.getString());
+            int size = in.getInt();
+            int currentPosition = in.getInt();
+
+            String[] strings = new String[in.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = in.getString();
+            }
+            // Artist and album entries go through the shared StringInterner once
+            // per entry rather than once per song
+            String[] interned = new String[strings.length];
+
+            for (int i = 0; i < size; i++) {
+                if (i % PROGRESS_EVERY == 0) {
+                    report(progress, i, size);
+                }
+                String title = lookup(strings, in.getInt());
+                String artist = lookupInterned(strings, interned, in.getInt());
+                String album = lookupInterned(strings, interned, in.getInt());
+                int duration = in.getInt();
+                playlist.addSong(Song.withInternedNames(title, artist, album, duration));
+            }
+
+            playlist.jumpTo(currentPosition);
+            report(progress, size, size);
+            return playlist;
+        }
+    }
+
+    // Whether the file was written by the old ObjectOutputStream based format
+    static boolean isLegacyFile(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(2);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading until two bytes or end of file
+            }
+            return header.position() == 2 && header.getShort(0) == LEGACY_MAGIC;
+        }
+    }
+
+    // Reader for files written with ObjectOutputStream before the binary format
+    private static Playlist readLegacy(String filename, IoProgress progress) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+            // Read playlist info
+            String playlistName = (String) ois.readObject();
+            int size = ois.readInt();
+            int currentPosition = ois.readInt();
+
+            Playlist playlist = new Playlist(playlistName);
+
+            // Read and add all songs
+            for (int i = 0; i < size; i++) {
+                if (i % PROGRESS_EVERY == 0) {
+                    report(progress, i, size);
+                }
+                String title = (String) ois.readObject();
+                String artist = (String) ois.readObject();
+                String album = (String) ois.readObject();
+                int duration = ois.readInt();
+
+                playlist.addSong(new Song(title, artist, album, duration));
+            }
+
+            playlist.jumpTo(currentPosition);
+            report(progress, size, size);
+            return playlist;
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Corrupt legacy playlist file: " + e.getMessage(), e);
+        }
+    }
+
+    // Report progress and stop if the calling thread was interrupted
+    static void report(IoProgress progress, long done, long total) throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Cancelled");
+        }
+        if (progress != null) {
+            progress.update(done, total);
+        }
+    }
+
+    private static String lookup(String[] strings, int id) throws IOException {
+        if (id == -1) {
+            return null;
+        }
+        if (id < 0 || id >= strings.length) {
+            throw new IOException("Bad string reference " + id);
+        }
+        return strings[id];
+    }
+
+    private static String lookupInterned(String[] strings, String[] interned, int id) throws IOException {
+        String value = lookup(strings, id);
+        if (value == null) {
+            return null;
+        }
+        if (interned[id] == null) {
+            interned[id] = StringInterner.intern(value);
+        }
+        return interned[id];
+    }
+
+    // Buffered writer on top of a FileChannel
+    private static class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putShort(short value) throws IOException {
+            ensure(2);
+            buffer.putShort(value);
+        }
+
+        void putString(String value) throws IOException {
+            if (value == null) {
+                putInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            if (bytes.length > buffer.capacity()) {
+                flush();
+                ByteBuffer large = ByteBuffer.wrap(bytes);
+                while (large.hasRemaining()) {
+                    PlaylistMetrics.bytesWritten(channel.write(large));
+                }
+            } else {
+                ensure(bytes.length);
+                buffer.put(bytes);
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                PlaylistMetrics.bytesWritten(channel.write(buffer));
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+
+    // Buffered reader on top of a FileChannel
+    private static class Input {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Input(FileChannel channel) {
+            this.channel = channel;
+            buffer.flip(); // start empty
+        }
+
+        short peekShort() throws IOException {
+            ensure(2);
+            return buffer.getShort(buffer.position());
+        }
+
+        int getInt() throws IOException {
+            ensure(4);
+            return buffer.getInt();
+        }
+
+        short getShort() throws IOException {
+            ensure(2);
+            return buffer.getShort();
+        }
+
+        String getString() throws IOException {
+            int length = getInt();
+            if (length == -1) {
+                return null;
+            }
+            if (length < 0) {
+                throw new IOException("Bad string length " + length);
+            }
+            byte[] bytes = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                if (!buffer.hasRemaining()) {
+                    fill();
+                }
+                int chunk = Math.min(buffer.remaining(), length - offset);
+                buffer.get(bytes, offset, chunk);
+                offset += chunk;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            while (buffer.remaining() < bytes) {
+                fill();
+            }
+        }
+
+        private void fill() throws IOException {
+            buffer.compact();
+            int read = channel.read(buffer);
+            buffer.flip();
+            if (read < 0) {
+                throw new EOFException("Unexpected end of playlist file");
+            }
+            PlaylistMetrics.bytesRead(read);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+// PlaylistIO.java
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+// Runs playlist loads and saves off the calling thread.
+//
+// Work runs on a dedicated executor (virtual threads on JDKs that have them,
+// daemon platform threads otherwise). Every callback is delivered through the
+// executor passed in by the caller - for Swing that is SwingUtilities::invokeLater,
+// so the loaded Playlist is only ever handed over on the Event Dispatch Thread.
+// Cancelling the returned Future interrupts the I/O; the listener then gets
+// cancelled() instead of a result.
+public class PlaylistIO {
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    public interface Listener<T> {
+        void progress(long done, long total);
+
+        void succeeded(T result);
+
+        void failed(IOException error);
+
+        void cancelled();
+    }
+
+    // Open a playlist file in the background (lazily mapped where possible, see Playlist.openMapped)
+    public static Future<?> load(final String filename, final Executor callbacks, final Listener<Playlist> listener) {
+        return EXECUTOR.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final Playlist playlist = Playlist.openMapped(filename, progressTo(callbacks, listener));
+                    // A mapped playlist aggregates its stats and builds its search index
+                    // by reading every record; do that here, before handing it over,
+                    // rather than on the callback thread
+                    playlist.getStats();
+                    playlist.buildSearchIndex();
+                    finish(callbacks, listener, playlist);
+                } catch (IOException e) {
+                    fail(callbacks, listener, e);
+                }
+            }
+        });
+    }
+
+    // Save a playlist in the background. Must be called on the thread that owns the
+    // playlist: the song order is captured there in O(1) (see Playlist.songsToWrite),
+    // so later edits cannot race the writer; the songs are gathered on the executor.
+    public static Future<?> save(Playlist playlist, final String filename, final Executor callbacks,
+                                 final Listener<String> listener) {
+        final String name = playlist.getName();
+        final int current = playlist.getCurrentIndex();
+        final Supplier<Song[]> songs = playlist.songsToWrite();
+
+        return EXECUTOR.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    PlaylistFile.write(filename, name, current, songs.get(), progressTo(callbacks, listener));
+                    finish(callbacks, listener, filename);
+                } catch (IOException e) {
+                    fail(callbacks, listener, e);
+                }
+            }
+        });
+    }
+
+    private static IoProgress progressTo(final Executor callbacks, final Listener<?> listener) {
+        return new IoProgress() {
+            @Override
+            public void update(final long done, final long total) {
+                callbacks.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.progress(done, total);
+                    }
+                });
+            }
+        };
+    }
+
+    private static <T> void finish(Executor callbacks, final Listener<T> listener, final T result) {
+        final boolean cancelled = Thread.currentThread().isInterrupted();
+        callbacks.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (cancelled) {
+                    listener.cancelled();
+                } else {
+                    listener.succeeded(result);
+                }
+            }
+        });
+    }
+
+    private static void fail(Executor callbacks, final Listener<?> listener, final IOException error) {
+        // An interrupted channel read reports ClosedByInterruptException
+        final boolean cancelled = error instanceof InterruptedIOException
+                || error instanceof java.nio.channels.ClosedByInterruptException
+                || Thread.currentThread().isInterrupted();
+        callbacks.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (cancelled) {
+                    listener.cancelled();
+                } else {
+                    listener.failed(error);
+                }
+            }
+        });
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            // Java 21+: one cheap virtual thread per task
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "playlist-io");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
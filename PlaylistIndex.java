@@ -0,0 +1,325 @@
+// PlaylistIndex.java
+// Implicit treap over the playlist's nodes, keyed by position.
+// The doubly-linked next/prev chain stays the source of truth for order;
+// this tree only answers "which node is at position i" and "what position
+// is this node at" in O(log n) expected time. Each node also sums the song
+// durations of its subtree, which answers the same questions for time offsets.
+class PlaylistIndex {
+    private Node root;
+    private int seed = 0x9E3779B9;
+
+    public int size() {
+        return weight(root);
+    }
+
+    public void clear() {
+        root = null;
+    }
+
+    // Get node at position (0-based)
+    public Node get(int position) {
+        if (position < 0 || position >= size()) {
+            return null;
+        }
+
+        Node current = root;
+        while (current != null) {
+            int leftWeight = weight(current.left);
+            if (position < leftWeight) {
+                current = current.left;
+            } else if (position == leftWeight) {
+                return current;
+            } else {
+                position -= leftWeight + 1;
+                current = current.right;
+            }
+        }
+        return null;
+    }
+
+    // Get position of a node that is part of this index
+    public int indexOf(Node node) {
+        int position = weight(node.left);
+        Node current = node;
+        while (current.parent != null) {
+            if (current == current.parent.right) {
+                position += weight(current.parent.left) + 1;
+            }
+            current = current.parent;
+        }
+        return position;
+    }
+
+    // Total duration of all songs, in seconds
+    public long totalDuration() {
+        return duration(root);
+    }
+
+    // Total duration of the songs before position; position == size() gives
+    // the total
+    public long durationBefore(int position) {
+        long elapsed = 0;
+        Node current = root;
+        while (current != null) {
+            int leftWeight = weight(current.left);
+            if (position <= leftWeight) {
+                current = current.left;
+            } else {
+                elapsed += duration(current.left) + current.songDuration;
+                position -= leftWeight + 1;
+                current = current.right;
+            }
+        }
+        return elapsed;
+    }
+
+    // Position of the song that is playing elapsed seconds after the start,
+    // or -1 if elapsed is negative or not less than the total duration
+    public int positionAt(long elapsed) {
+        if (elapsed < 0 || elapsed >= duration(root)) {
+            return -1;
+        }
+
+        int position = 0;
+        Node current = root;
+        while (current != null) {
+            long leftDuration = duration(current.left);
+            if (elapsed < leftDuration) {
+                current = current.left;
+                continue;
+            }
+            elapsed -= leftDuration;
+            position += weight(current.left);
+            if (elapsed < current.songDuration) {
+                return position;
+            }
+            elapsed -= current.songDuration;
+            position++;
+            current = current.right;
+        }
+        return -1;
+    }
+
+    // Refresh the sums above a node after its song or song duration changed
+    public void durationChanged(Node node) {
+        node.songDuration = node.getSong().getDuration();
+        for (Node current = node; current != null; current = current.parent) {
+            pull(current);
+        }
+    }
+
+    // Insert a node so that it ends up at the given position
+    public void insert(int position, Node node) {
+        resetLinks(node);
+        if (position >= size()) {
+            root = merge(root, node);
+        } else {
+            Node[] parts = split(root, position);
+            root = merge(merge(parts[0], node), parts[1]);
+        }
+        root.parent = null;
+    }
+
+    // Insert count nodes, already linked by next from first onwards, so that
+    // they start at position: O(count + log n)
+    public void insertAll(int position, Node first, int count) {
+        Node block = build(first, count);
+        Node[] parts = split(root, position);
+        root = merge(merge(parts[0], block), parts[1]);
+        root.parent = null;
+    }
+
+    // Move the count nodes at [from, from + count) so that they start at
+    // position to of the resulting order: O(log n)
+    public void moveRange(int from, int count, int to) {
+        Node[] before = split(root, from);
+        Node[] block = split(before[1], count);
+        Node[] rest = split(merge(before[0], block[1]), to);
+        root = merge(merge(rest[0], block[0]), rest[1]);
+        root.parent = null;
+    }
+
+    // Remove the count nodes at [position, position + count): O(log n)
+    public void removeRange(int position, int count) {
+        Node[] before = split(root, position);
+        Node[] removed = split(before[1], count);
+        root = merge(before[0], removed[1]);
+        if (root != null) {
+            root.parent = null;
+        }
+    }
+
+    // Remove a node by replacing it with the merge of its two subtrees
+    public void remove(Node node) {
+        Node replacement = merge(node.left, node.right);
+        Node parent = node.parent;
+
+        if (replacement != null) {
+            replacement.parent = parent;
+        }
+        if (parent == null) {
+            root = replacement;
+        } else if (parent.left == node) {
+            parent.left = replacement;
+        } else {
+            parent.right = replacement;
+        }
+
+        for (Node current = parent; current != null; current = current.parent) {
+            pull(current);
+        }
+        resetLinks(node);
+    }
+
+    // Rebuild the whole index from the linked chain starting at head, in O(n).
+    // Uses the classic stack-based Cartesian tree construction so the result
+    // is a proper random treap.
+    public void rebuild(Node head, int size) {
+        root = build(head, size);
+    }
+
+    // Treap over count nodes linked by next from first onwards
+    private Node build(Node first, int count) {
+        if (first == null || count <= 0) {
+            return null;
+        }
+
+        Node[] spine = new Node[count];
+        int top = -1;
+
+        Node current = first;
+        for (int i = 0; i < count; i++, current = current.getNext()) {
+            resetLinks(current);
+            Node last = null;
+            while (top >= 0 && spine[top].priority < current.priority) {
+                last = spine[top--];
+            }
+            current.left = last;
+            if (last != null) {
+                last.parent = current;
+            }
+            if (top >= 0) {
+                spine[top].right = current;
+                current.parent = spine[top];
+            }
+            spine[++top] = current;
+        }
+
+        pullAll(spine[0]);
+        return spine[0];
+    }
+
+    private Node merge(Node a, Node b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+
+        if (a.priority > b.priority) {
+            Node right = merge(a.right, b);
+            a.right = right;
+            right.parent = a;
+            pull(a);
+            return a;
+        } else {
+            Node left = merge(a, b.left);
+            b.left = left;
+            left.parent = b;
+            pull(b);
+            return b;
+        }
+    }
+
+    // Split into [0, count) and [count, size)
+    private Node[] split(Node node, int count) {
+        if (node == null) {
+            return new Node[] { null, null };
+        }
+
+        Node[] parts;
+        if (weight(node.left) >= count) {
+            parts = split(node.left, count);
+            node.left = parts[1];
+            if (parts[1] != null) {
+                parts[1].parent = node;
+            }
+            if (parts[0] != null) {
+                parts[0].parent = null;
+            }
+            pull(node);
+            parts[1] = node;
+        } else {
+            parts = split(node.right, count - weight(node.left) - 1);
+            node.right = parts[0];
+            if (parts[0] != null) {
+                parts[0].parent = node;
+            }
+            if (parts[1] != null) {
+                parts[1].parent = null;
+            }
+            pull(node);
+            parts[0] = node;
+        }
+        node.parent = null;
+        return parts;
+    }
+
+    // Recompute subtree aggregates for every node, bottom-up, without recursion
+    private void pullAll(Node node) {
+        Node previous = null;
+        while (node != null) {
+            if (previous == node.parent) {
+                if (node.left != null) {
+                    previous = node;
+                    node = node.left;
+                    continue;
+                }
+                if (node.right != null) {
+                    previous = node;
+                    node = node.right;
+                    continue;
+                }
+            } else if (previous == node.left && node.right != null) {
+                previous = node;
+                node = node.right;
+                continue;
+            }
+            pull(node);
+            previous = node;
+            node = node.parent;
+        }
+    }
+
+    private void pull(Node node) {
+        node.weight = weight(node.left) + weight(node.right) + 1;
+        node.duration = duration(node.left) + duration(node.right) + node.songDuration;
+    }
+
+    private void resetLinks(Node node) {
+        node.left = null;
+        node.right = null;
+        node.parent = null;
+        node.weight = 1;
+        node.songDuration = node.getSong().getDuration();
+        node.duration = node.songDuration;
+        node.priority = nextPriority();
+    }
+
+    private int nextPriority() {
+        // xorshift32, good enough for treap balancing
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+    private static int weight(Node node) {
+        return node != null ? node.weight : 0;
+    }
+
+    private static long duration(Node node) {
+        return node != null ? node.duration : 0;
+    }
+}
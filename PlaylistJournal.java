@@ -0,0 +1,599 @@
+// PlaylistJournal.java
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+// Append-only journal of playlist edits.
+//
+// A journaled playlist lives in two kinds of files next to basePath:
+//   <base>.<generation>.snap   full playlist in the PlaylistFile binary format
+//   <base>.<generation>.log    edits made after that snapshot
+//
+// Every mutation appends one small record to the current log, so saving costs
+// O(1) per edit. Once the log grows past a threshold, a new generation is
+// started and the snapshot for it is written on a background thread; older
+// files are deleted only after the new snapshot has been safely renamed into
+// place. Loading reads the newest complete snapshot and replays every log of
+// that generation or later.
+//
+// Each record is framed as: int length, byte type, payload, int CRC32 of
+// type + payload. A torn record at the end of a log (crash mid-write) fails
+// its length or checksum test and is dropped along with anything after it.
+// A record is as long as its fields need; one larger than the write buffer
+// goes straight to the file.
+//
+// Written records reach the operating system at once but only reach the disk
+// when the log is forced (FileChannel.force), as chosen by SyncPolicy:
+//   NONE         never force; an OS crash or power loss can lose any edit
+//                the OS had not written back yet
+//   FLUSH        (default) force on flush(), close() and before a log is
+//                rolled over, so edits up to the last explicit flush survive
+//   EVERY_WRITE  also force each time buffered records are written out, so
+//                at most the last FLUSH_EVERY records, still in memory, are lost
+// Snapshots are always forced before they replace anything.
+//
+// A failed write stops the journal: later edits are not recorded and
+// getError() returns the failure. A failed background snapshot only costs
+// disk space (the logs it would have replaced are kept) and is returned by
+// getCompactionError(). Both are also counted by PlaylistMetrics and logged
+// through java.util.logging.
+public class PlaylistJournal {
+    private static final Logger LOGGER = Logger.getLogger(PlaylistJournal.class.getName());
+
+    public enum SyncPolicy {
+        NONE,
+        FLUSH,
+        EVERY_WRITE
+    }
+
+    // Record types
+    private static final byte INSERT = 1;   // int position, song
+    private static final byte REMOVE = 2;   // int position
+    private static final byte MOVE_UP = 3;  // int position
+    private static final byte SHUFFLE = 4;  // long seed
+    private static final byte CURRENT = 5;  // int position
+    private static final byte SONG = 6;     // int position, song
+    private static final byte NAME = 7;     // string
+    private static final byte MOVE_RANGE = 8; // int from, int to, int count
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int FLUSH_EVERY = 32; // records kept in memory before writing them out
+    private static final long DEFAULT_COMPACT_THRESHOLD = 4 * 1024 * 1024;
+
+    private final String basePath;
+    private final ExecutorService compactor;
+    private long generation;
+    private FileChannel log;
+    private long logBytes;
+    private long compactThreshold = DEFAULT_COMPACT_THRESHOLD;
+    private SyncPolicy syncPolicy = SyncPolicy.FLUSH;
+    private Future<?> compaction;
+    private boolean inBatch; // set while one edit is recorded as several records
+
+    private final ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE);
+    private int pendingRecords;
+    private ByteBuffer record = ByteBuffer.allocate(BUFFER_SIZE); // grown for long fields
+    private IOException error;
+    private volatile IOException compactionError;
+
+    private PlaylistJournal(String basePath, long generation) {
+        this.basePath = basePath;
+        this.generation = generation;
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "playlist-journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Start journaling a playlist: write a first snapshot synchronously and open
+    // an empty log after it. Files of earlier generations at basePath are removed.
+    static PlaylistJournal start(Playlist playlist, String basePath) throws IOException {
+        long generation = 1;
+        for (long existing : generations(basePath, ".snap")) {
+            generation = Math.max(generation, existing + 1);
+        }
+        for (long existing : generations(basePath, ".log")) {
+            generation = Math.max(generation, existing + 1);
+        }
+
+        PlaylistJournal journal = new PlaylistJournal(basePath, generation);
+        writeSnapshot(basePath, generation, playlist.getName(), playlist.getCurrentIndex(), playlist.copySongs());
+        journal.openLog(0);
+        deleteOlderThan(basePath, generation);
+        return journal;
+    }
+
+    // Load a journaled playlist: newest snapshot plus the logs after it.
+    // The returned playlist keeps appending to the newest log.
+    static Playlist open(String basePath) throws IOException {
+        long start = PlaylistMetrics.start();
+        try {
+            return load(basePath);
+        } catch (IOException e) {
+            PlaylistMetrics.failed(PlaylistOperation.OPEN_JOURNAL, e);
+            throw e;
+        } finally {
+            PlaylistMetrics.stop(PlaylistOperation.OPEN_JOURNAL, start);
+        }
+    }
+
+    private static Playlist load(String basePath) throws IOException {
+        List<Long> snapshots = generations(basePath, ".snap");
+        long snapshotGeneration = snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1);
+
+        Playlist playlist = snapshotGeneration > 0
+                ? PlaylistFile.read(fileName(basePath, snapshotGeneration, ".snap"))
+                : new Playlist(new File(basePath).getName());
+
+        long lastGeneration = Math.max(1, snapshotGeneration);
+        long validBytes = 0;
+        for (long generation : generations(basePath, ".log")) {
+            if (generation >= snapshotGeneration) {
+                validBytes = replay(playlist, fileName(basePath, generation, ".log"));
+                lastGeneration = generation;
+            }
+        }
+
+        PlaylistJournal journal = new PlaylistJournal(basePath, lastGeneration);
+        journal.openLog(validBytes);
+        playlist.setJournal(journal);
+        return playlist;
+    }
+
+    public void setCompactThreshold(long bytes) {
+        this.compactThreshold = bytes;
+    }
+
+    public void setSyncPolicy(SyncPolicy syncPolicy) {
+        this.syncPolicy = syncPolicy;
+    }
+
+    public SyncPolicy getSyncPolicy() {
+        return syncPolicy;
+    }
+
+    // The write failure that stopped journaling, or null while it works
+    public IOException getError() {
+        return error;
+    }
+
+    // The last background snapshot failure, or null
+    public IOException getCompactionError() {
+        return compactionError;
+    }
+
+    // Recording - called by Playlist after each mutation has been applied
+    void recordInsert(Playlist playlist, int position, Song song) {
+        begin(INSERT);
+        record.putInt(position);
+        putSong(song);
+        end(playlist);
+    }
+
+    void recordRemove(Playlist playlist, int position) {
+        begin(REMOVE);
+        record.putInt(position);
+        end(playlist);
+    }
+
+    void recordMoveUp(Playlist playlist, int position) {
+        begin(MOVE_UP);
+        record.putInt(position);
+        end(playlist);
+    }
+
+    // Bracket the records of one bulk edit. The snapshot taken by a compaction
+    // already contains the whole edit, so no compaction may start between them.
+    void beginBatch() {
+        inBatch = true;
+    }
+
+    void endBatch(Playlist playlist) {
+        inBatch = false;
+        if (error != null) {
+            return;
+        }
+        try {
+            compactIfNeeded(playlist);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    void recordMoveRange(Playlist playlist, int from, int to, int count) {
+        begin(MOVE_RANGE);
+        record.putInt(from);
+        record.putInt(to);
+        record.putInt(count);
+        end(playlist);
+    }
+
+    void recordShuffle(Playlist playlist, long seed) {
+        begin(SHUFFLE);
+        record.putLong(seed);
+        end(playlist);
+    }
+
+    void recordCurrent(Playlist playlist, int position) {
+        begin(CURRENT);
+        record.putInt(position);
+        end(playlist);
+    }
+
+    void recordSong(Playlist playlist, int position, Song song) {
+        begin(SONG);
+        record.putInt(position);
+        putSong(song);
+        end(playlist);
+    }
+
+    void recordName(Playlist playlist, String name) {
+        begin(NAME);
+        putString(name);
+        end(playlist);
+    }
+
+    // Record a reordering that has no compact description (such as a sort) by
+    // starting a new generation whose snapshot is written before returning.
+    // Replaying the old log would miss the reorder, so this cannot wait for
+    // the background compactor.
+    void recordReorder(Playlist playlist) {
+        if (error != null) {
+            return;
+        }
+        awaitCompaction();
+        try {
+            writePending();
+            closeLog();
+            generation++;
+            writeSnapshot(basePath, generation, playlist.getName(), playlist.getCurrentIndex(), playlist.copySongs());
+            openLog(0);
+            deleteOlderThan(basePath, generation);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    // Write buffered records to the log file and, unless the sync policy is
+    // NONE, force them to disk
+    public void flush() {
+        if (error != null) {
+            return;
+        }
+        try {
+            writePending();
+            if (syncPolicy == SyncPolicy.FLUSH) {
+                sync(); // EVERY_WRITE has already forced it
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    // Flush, wait for a running compaction and release the log file
+    public void close() {
+        flush();
+        awaitCompaction();
+        compactor.shutdown();
+        try {
+            log.close();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void awaitCompaction() {
+        try {
+            if (compaction != null) {
+                compaction.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            PlaylistMetrics.failed(PlaylistOperation.JOURNAL_WRITE, e);
+            LOGGER.log(Level.WARNING, "Error compacting journal " + basePath, e.getCause());
+        }
+    }
+
+    private void begin(byte type) {
+        if (record.capacity() > BUFFER_SIZE) {
+            record = ByteBuffer.allocate(BUFFER_SIZE); // don't keep a huge record's buffer
+        }
+        record.clear();
+        record.putInt(0); // length, filled in by end()
+        record.put(type);
+    }
+
+    private void end(Playlist playlist) {
+        if (error != null) {
+            return;
+        }
+
+        reserve(4);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, record.position() - 4);
+        record.putInt((int) crc.getValue());
+        record.putInt(0, record.position() - 4);
+        record.flip();
+
+        try {
+            if (pending.remaining() < record.remaining()) {
+                writePending();
+            }
+            if (record.remaining() > pending.capacity()) {
+                write(record);
+            } else {
+                pending.put(record);
+                pendingRecords++;
+                if (pendingRecords >= FLUSH_EVERY) {
+                    writePending();
+                }
+            }
+            if (!inBatch) {
+                compactIfNeeded(playlist);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void compactIfNeeded(Playlist playlist) throws IOException {
+        if (logBytes + pending.position() > compactThreshold && (compaction == null || compaction.isDone())) {
+            compact(playlist);
+        }
+    }
+
+    private void putSong(Song song) {
+        putString(song.getTitle());
+        putString(song.getArtist());
+        putString(song.getAlbum());
+        record.putInt(song.getDuration());
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            record.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        reserve(4 + bytes.length);
+        record.putInt(bytes.length);
+        record.put(bytes);
+    }
+
+    // Make room for bytes more in the record, keeping what it already holds
+    private void reserve(int bytes) {
+        if (record.remaining() < bytes) {
+            int capacity = Math.max(record.capacity() * 2, record.position() + bytes + 64);
+            ByteBuffer larger = ByteBuffer.allocate(capacity);
+            record.flip();
+            larger.put(record);
+            record = larger;
+        }
+    }
+
+    private void writePending() throws IOException {
+        pending.flip();
+        write(pending);
+        pending.clear();
+        pendingRecords = 0;
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        if (!buffer.hasRemaining()) {
+            return;
+        }
+        long start = PlaylistMetrics.start();
+        long before = logBytes;
+        while (buffer.hasRemaining()) {
+            logBytes += log.write(buffer);
+        }
+        if (syncPolicy == SyncPolicy.EVERY_WRITE) {
+            sync();
+        }
+        PlaylistMetrics.bytesWritten(logBytes - before);
+        PlaylistMetrics.stop(PlaylistOperation.JOURNAL_WRITE, start);
+    }
+
+    private void sync() throws IOException {
+        log.force(false);
+    }
+
+    // Close the current log, forcing it first under the FLUSH policy
+    private void closeLog() throws IOException {
+        if (syncPolicy == SyncPolicy.FLUSH) {
+            sync();
+        }
+        log.close();
+    }
+
+    // Roll over to a new generation and write its snapshot in the background
+    private void compact(Playlist playlist) throws IOException {
+        writePending();
+        closeLog();
+
+        final long snapshotGeneration = ++generation;
+        final String name = playlist.getName();
+        final int current = playlist.getCurrentIndex();
+        final Song[] songs = playlist.copySongs();
+        openLog(0);
+
+        compaction = compactor.submit(() -> {
+            try {
+                writeSnapshot(basePath, snapshotGeneration, name, current, songs);
+                deleteOlderThan(basePath, snapshotGeneration);
+            } catch (IOException e) {
+                compactionError = e;
+                PlaylistMetrics.failed(PlaylistOperation.JOURNAL_WRITE, e);
+                LOGGER.log(Level.WARNING, "Error compacting journal " + basePath, e);
+            }
+        });
+    }
+
+    private void openLog(long validBytes) throws IOException {
+        log = FileChannel.open(Paths.get(fileName(basePath, generation, ".log")),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        log.truncate(validBytes); // drop a torn tail left by a crash
+        log.position(validBytes);
+        logBytes = validBytes;
+    }
+
+    private void fail(IOException e) {
+        PlaylistMetrics.failed(PlaylistOperation.JOURNAL_WRITE, e);
+        if (error == null) {
+            error = e;
+            LOGGER.log(Level.SEVERE, "Error writing journal " + basePath + "; later edits are not journaled", e);
+        }
+    }
+
+    private static void writeSnapshot(String basePath, long generation, String name, int current, Song[] songs)
+            throws IOException {
+        // PlaylistFile writes to a temporary file first, so a snapshot file is always complete
+        PlaylistFile.write(fileName(basePath, generation, ".snap"), name, current, songs, null);
+    }
+
+    // Apply the valid records of one log file; returns the length of the valid prefix
+    private static long replay(Playlist playlist, String filename) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(Paths.get(filename)));
+        PlaylistMetrics.bytesRead(in.capacity());
+        CRC32 crc = new CRC32();
+
+        while (in.remaining() >= 4) {
+            int start = in.position();
+            int length = in.getInt();
+            if (length < 5 || length > in.remaining()) {
+                in.position(start);
+                break;
+            }
+
+            crc.reset();
+            crc.update(in.array(), start + 4, length - 4);
+            if ((int) crc.getValue() != in.getInt(start + length)) {
+                in.position(start);
+                break;
+            }
+
+            apply(playlist, in);
+            in.position(start + 4 + length);
+        }
+        return in.position();
+    }
+
+    private static void apply(Playlist playlist, ByteBuffer in) {
+        byte type = in.get();
+        switch (type) {
+            case INSERT: {
+                int position = in.getInt();
+                playlist.addSongAt(getSong(in), position);
+                break;
+            }
+            case REMOVE:
+                playlist.removeSong(in.getInt());
+                break;
+            case MOVE_UP:
+                playlist.moveSongUp(in.getInt());
+                break;
+            case SHUFFLE:
+                playlist.shuffle(in.getLong());
+                break;
+            case MOVE_RANGE: {
+                int from = in.getInt();
+                int to = in.getInt();
+                playlist.moveRange(from, to, in.getInt());
+                break;
+            }
+            case CURRENT:
+                playlist.jumpTo(in.getInt());
+                break;
+            case SONG: {
+                Song song = playlist.getSong(in.getInt());
+                Song values = getSong(in);
+                if (song != null) {
+                    song.setTitle(values.getTitle());
+                    song.setArtist(values.getArtist());
+                    song.setAlbum(values.getAlbum());
+                    song.setDuration(values.getDuration());
+                }
+                break;
+            }
+            case NAME:
+                playlist.setName(getString(in));
+                break;
+            default:
+                // Unknown record from a newer version; skip it
+                break;
+        }
+    }
+
+    private static Song getSong(ByteBuffer in) {
+        String title = getString(in);
+        String artist = getString(in);
+        String album = getString(in);
+        return new Song(title, artist, album, in.getInt());
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static String fileName(String basePath, long generation, String suffix) {
+        return basePath + "." + generation + suffix;
+    }
+
+    // Generations with a complete file of the given suffix, oldest first
+    private static List<Long> generations(String basePath, String suffix) {
+        File base = new File(basePath).getAbsoluteFile();
+        String prefix = base.getName() + ".";
+        List<Long> found = new ArrayList<>();
+
+        String[] names = base.getParentFile().list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(prefix) && name.endsWith(suffix)) {
+                    String middle = name.substring(prefix.length(), name.length() - suffix.length());
+                    try {
+                        found.add(Long.parseLong(middle));
+                    } catch (NumberFormatException e) {
+                        // not one of ours
+                    }
+                }
+            }
+        }
+        Collections.sort(found);
+        return found;
+    }
+
+    private static void deleteOlderThan(String basePath, long generation) throws IOException {
+        for (String suffix : new String[] { ".snap", ".log" }) {
+            for (long existing : generations(basePath, suffix)) {
+                if (existing < generation) {
+                    Path path = Paths.get(fileName(basePath, existing, suffix));
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+// PlaylistListModel.java
+import javax.swing.AbstractListModel;
+
+// ListModel that reads rows straight from a Playlist instead of copying them.
+// It listens to the playlist and forwards its changes as fine-grained
+// ListDataEvents, so an edit only repaints the rows it touched.
+public class PlaylistListModel extends AbstractListModel<Song> implements PlaylistListener {
+    private static final long serialVersionUID = 1L;
+
+    private Playlist playlist;
+
+    public PlaylistListModel(Playlist playlist) {
+        this.playlist = playlist;
+        playlist.addPlaylistListener(this);
+    }
+
+    public Playlist getPlaylist() {
+        return playlist;
+    }
+
+    // Show a different playlist
+    public void setPlaylist(Playlist newPlaylist) {
+        int oldSize = playlist.getSize();
+        playlist.removePlaylistListener(this);
+        playlist = newPlaylist;
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+
+        playlist.addPlaylistListener(this);
+        if (playlist.getSize() > 0) {
+            fireIntervalAdded(this, 0, playlist.getSize() - 1);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return playlist.getSize();
+    }
+
+    @Override
+    public Song getElementAt(int index) {
+        return playlist.getSong(index);
+    }
+
+    @Override
+    public void songsInserted(Playlist source, int fromIndex, int toIndex) {
+        fireIntervalAdded(this, fromIndex, toIndex);
+    }
+
+    @Override
+    public void songsRemoved(Playlist source, int fromIndex, int toIndex) {
+        fireIntervalRemoved(this, fromIndex, toIndex);
+    }
+
+    @Override
+    public void songsChanged(Playlist source, int fromIndex, int toIndex) {
+        fireContentsChanged(this, fromIndex, toIndex);
+    }
+
+    @Override
+    public void currentSongChanged(Playlist source) {
+        // The list does not mark the current song
+    }
+}
@@ -0,0 +1,13 @@
+// PlaylistListener.java
+// Notified after a playlist has changed. Index ranges are inclusive and refer
+// to positions after the change (for removals: where the songs used to be).
+public interface PlaylistListener {
+    void songsInserted(Playlist playlist, int fromIndex, int toIndex);
+
+    void songsRemoved(Playlist playlist, int fromIndex, int toIndex);
+
+    // Songs in the range were replaced, reordered or edited
+    void songsChanged(Playlist playlist, int fromIndex, int toIndex);
+
+    void currentSongChanged(Playlist playlist);
+}
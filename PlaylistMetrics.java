@@ -0,0 +1,436 @@
+// PlaylistMetrics.java
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+// Counts and latency histograms for playlist operations, plus bytes read and
+// written by saves, loads and the journal.
+//
+// Off unless enabled in code or with -Dplaylist.metrics=true. While disabled,
+// an instrumented call costs one volatile read: start() returns 0 without
+// reading the clock and stop() ignores a 0 start.
+//
+//   PlaylistMetrics.enable();
+//   PlaylistMetrics.registerMBean();   // browse in JConsole / VisualVM
+//   PlaylistMetrics.startReporter(PlaylistMetrics.CONSOLE, 60000);
+//
+// Latencies are kept in LatencyHistograms (6.25% precision) and reported in
+// microseconds. Counters are cumulative until reset().
+public class PlaylistMetrics {
+    private static final Logger LOGGER = Logger.getLogger(PlaylistMetrics.class.getName());
+
+    public static final String MBEAN_DOMAIN = "MusicPlaylistManager";
+
+    private static final PlaylistOperation[] OPERATIONS = PlaylistOperation.values();
+    private static final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    private static final LongAdder[] errors = new LongAdder[OPERATIONS.length];
+    private static final LongAdder bytesRead = new LongAdder();
+    private static final LongAdder bytesWritten = new LongAdder();
+    private static volatile boolean enabled;
+    private static volatile String lastError;
+    private static ScheduledExecutorService reporterThread;
+
+    static {
+        enabled = Boolean.getBoolean("playlist.metrics");
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            latencies[i] = new LatencyHistogram();
+            errors[i] = new LongAdder();
+        }
+    }
+
+    // Receives the cumulative statistics of every operation seen so far
+    public interface Reporter {
+        void report(List<Stats> operations, long bytesRead, long bytesWritten);
+    }
+
+    // Prints a report table to standard output
+    public static final Reporter CONSOLE = new Reporter() {
+        @Override
+        public void report(List<Stats> operations, long read, long written) {
+            System.out.println(format(operations, read, written));
+        }
+    };
+
+    // JMX view of the whole metrics layer
+    public interface MetricsMBean {
+        boolean isEnabled();
+
+        void setEnabled(boolean enabled);
+
+        long getBytesRead();
+
+        long getBytesWritten();
+
+        long getErrorCount();
+
+        String getLastError();
+
+        // One line per operation, slowest p99 first
+        String[] getReport();
+
+        void reset();
+    }
+
+    // JMX view of one operation
+    public interface OperationMBean {
+        long getCount();
+
+        long getErrors();
+
+        double getMeanMicros();
+
+        double getP50Micros();
+
+        double getP90Micros();
+
+        double getP99Micros();
+
+        double getP999Micros();
+
+        double getMaxMicros();
+    }
+
+    private PlaylistMetrics() {
+    }
+
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static void disable() {
+        enabled = false;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // Start timing an operation; pass the result to stop()
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public static void stop(PlaylistOperation operation, long start) {
+        if (start != 0) {
+            latencies[operation.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    public static void failed(PlaylistOperation operation, Exception error) {
+        if (enabled) {
+            errors[operation.ordinal()].increment();
+            lastError = operation + ": " + error.getMessage();
+        }
+    }
+
+    public static void bytesRead(long bytes) {
+        if (enabled) {
+            bytesRead.add(bytes);
+        }
+    }
+
+    public static void bytesWritten(long bytes) {
+        if (enabled) {
+            bytesWritten.add(bytes);
+        }
+    }
+
+    public static long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    public static long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public static long getErrorCount() {
+        long total = 0;
+        for (LongAdder adder : errors) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    public static String getLastError() {
+        return lastError;
+    }
+
+    public static Stats getStats(PlaylistOperation operation) {
+        return new Stats(operation, latencies[operation.ordinal()], errors[operation.ordinal()].sum());
+    }
+
+    // Statistics of the operations that have been used, slowest p99 first
+    public static List<Stats> getAllStats() {
+        List<Stats> all = new ArrayList<>();
+        for (PlaylistOperation operation : OPERATIONS) {
+            Stats stats = getStats(operation);
+            if (stats.getCount() > 0 || stats.getErrors() > 0) {
+                all.add(stats);
+            }
+        }
+        Collections.sort(all, new Comparator<Stats>() {
+            @Override
+            public int compare(Stats a, Stats b) {
+                return Long.compare(b.getP99Nanos(), a.getP99Nanos());
+            }
+        });
+        return all;
+    }
+
+    public static void reset() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            latencies[i].reset();
+            errors[i].reset();
+        }
+        bytesRead.reset();
+        bytesWritten.reset();
+        lastError = null;
+    }
+
+    // Current statistics as a table
+    public static String report() {
+        return format(getAllStats(), getBytesRead(), getBytesWritten());
+    }
+
+    static String format(List<Stats> operations, long read, long written) {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format(Locale.ROOT, "%-13s %10s %7s %10s %10s %10s %10s %10s%n",
+                "Operation", "Count", "Errors", "Mean us", "p50 us", "p99 us", "p99.9 us", "Max us"));
+        for (Stats stats : operations) {
+            table.append(stats).append(System.lineSeparator());
+        }
+        table.append(String.format(Locale.ROOT, "Bytes read: %d, bytes written: %d", read, written));
+        return table.toString();
+    }
+
+    // Send the statistics to reporter every periodMillis, from a daemon thread.
+    // Replaces any reporter started before.
+    public static synchronized void startReporter(final Reporter reporter, long periodMillis) {
+        stopReporter();
+        reporterThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "playlist-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporterThread.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    reporter.report(getAllStats(), getBytesRead(), getBytesWritten());
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Error reporting metrics", e);
+                }
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stopReporter() {
+        if (reporterThread != null) {
+            reporterThread.shutdownNow();
+            reporterThread = null;
+        }
+    }
+
+    // Register the metrics with the platform MBean server as
+    // MusicPlaylistManager:type=PlaylistMetrics, plus one MBean per operation
+    // (MusicPlaylistManager:type=PlaylistMetrics,operation=ADD etc.)
+    public static synchronized boolean registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(MBEAN_DOMAIN + ":type=PlaylistMetrics");
+            if (server.isRegistered(name)) {
+                return true;
+            }
+            server.registerMBean(new StandardMBean(new Metrics(), MetricsMBean.class), name);
+            for (PlaylistOperation operation : OPERATIONS) {
+                server.registerMBean(new StandardMBean(new Operation(operation), OperationMBean.class),
+                        new ObjectName(MBEAN_DOMAIN + ":type=PlaylistMetrics,operation=" + operation));
+            }
+            return true;
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Error registering metrics MBean", e);
+            return false;
+        }
+    }
+
+    // Statistics of one operation at the time it was taken
+    public static class Stats {
+        private final PlaylistOperation operation;
+        private final long count;
+        private final long errors;
+        private final long totalNanos;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long p999;
+        private final long max;
+
+        Stats(PlaylistOperation operation, LatencyHistogram histogram, long errors) {
+            this.operation = operation;
+            this.errors = errors;
+            this.count = histogram.getCount();
+            this.totalNanos = histogram.getTotal();
+            this.max = histogram.getMax();
+            long[] percentiles = histogram.percentiles(50, 90, 99, 99.9);
+            this.p50 = percentiles[0];
+            this.p90 = percentiles[1];
+            this.p99 = percentiles[2];
+            this.p999 = percentiles[3];
+        }
+
+        public PlaylistOperation getOperation() {
+            return operation;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public double getMeanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        public long getP50Nanos() {
+            return p50;
+        }
+
+        public long getP90Nanos() {
+            return p90;
+        }
+
+        public long getP99Nanos() {
+            return p99;
+        }
+
+        public long getP999Nanos() {
+            return p999;
+        }
+
+        public long getMaxNanos() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-13s %10d %7d %10.1f %10.1f %10.1f %10.1f %10.1f",
+                    operation, count, errors, getMeanNanos() / 1000, p50 / 1000.0, p99 / 1000.0,
+                    p999 / 1000.0, max / 1000.0);
+        }
+    }
+
+    private static class Metrics implements MetricsMBean {
+        @Override
+        public boolean isEnabled() {
+            return PlaylistMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean on) {
+            enabled = on;
+        }
+
+        @Override
+        public long getBytesRead() {
+            return PlaylistMetrics.getBytesRead();
+        }
+
+        @Override
+        public long getBytesWritten() {
+            return PlaylistMetrics.getBytesWritten();
+        }
+
+        @Override
+        public long getErrorCount() {
+            return PlaylistMetrics.getErrorCount();
+        }
+
+        @Override
+        public String getLastError() {
+            return PlaylistMetrics.getLastError();
+        }
+
+        @Override
+        public String[] getReport() {
+            List<Stats> all = getAllStats();
+            String[] lines = new String[all.size()];
+            for (int i = 0; i < lines.length; i++) {
+                lines[i] = all.get(i).toString();
+            }
+            return lines;
+        }
+
+        @Override
+        public void reset() {
+            PlaylistMetrics.reset();
+        }
+    }
+
+    private static class Operation implements OperationMBean {
+        private final PlaylistOperation operation;
+
+        Operation(PlaylistOperation operation) {
+            this.operation = operation;
+        }
+
+        @Override
+        public long getCount() {
+            return latencies[operation.ordinal()].getCount();
+        }
+
+        @Override
+        public long getErrors() {
+            return errors[operation.ordinal()].sum();
+        }
+
+        @Override
+        public double getMeanMicros() {
+            return getStats(operation).getMeanNanos() / 1000;
+        }
+
+        @Override
+        public double getP50Micros() {
+            return getStats(operation).getP50Nanos() / 1000.0;
+        }
+
+        @Override
+        public double getP90Micros() {
+            return getStats(operation).getP90Nanos() / 1000.0;
+        }
+
+        @Override
+        public double getP99Micros() {
+            return getStats(operation).getP99Nanos() / 1000.0;
+        }
+
+        @Override
+        public double getP999Micros() {
+            return getStats(operation).getP999Nanos() / 1000.0;
+        }
+
+        @Override
+        public double getMaxMicros() {
+            return latencies[operation.ordinal()].getMax() / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+// PlaylistOperation.java
+// Operations measured by PlaylistMetrics
+public enum PlaylistOperation {
+    // Mutations
+    ADD,
+    ADD_ALL,
+    REMOVE,
+    REMOVE_IF,
+    MOVE,
+    MOVE_RANGE,
+    SHUFFLE,
+    SORT,
+    UNDO,
+    REDO,
+
+    // Lookups
+    GET,
+    FIND,
+    SEARCH,
+    SEEK,
+
+    // Navigation
+    NEXT,
+    PREVIOUS,
+    JUMP,
+
+    // Persistence
+    SAVE,
+    LOAD,
+    OPEN_MAPPED,
+    OPEN_JOURNAL,
+    JOURNAL_WRITE
+}
@@ -0,0 +1,92 @@
+// PlaylistSnapshot.java
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Immutable view of a playlist at one moment, returned by Playlist.snapshot().
+//
+// Taking a snapshot is O(1): it is just the root of the playlist's current
+// SongTree version, which later edits never change. Any thread can read,
+// iterate, save or render a snapshot without locking while the playlist goes
+// on changing. getSong/get are O(log n), iteration is O(1) per song.
+//
+// The list of songs is fixed, but the Song objects are the live ones: an edit
+// to a song's title is visible through every snapshot that contains it.
+public class PlaylistSnapshot extends AbstractList<Song> {
+    private static final Logger LOGGER = Logger.getLogger(PlaylistSnapshot.class.getName());
+
+    private final String name;
+    private final int currentIndex;
+    final SongTree root;
+
+    PlaylistSnapshot(String name, int currentIndex, SongTree root) {
+        this.name = name;
+        this.currentIndex = currentIndex;
+        this.root = root;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Position of the current song when the snapshot was taken, or -1
+    public int getCurrentIndex() {
+        return currentIndex;
+    }
+
+    public Song getCurrentSong() {
+        return currentIndex >= 0 ? get(currentIndex) : null;
+    }
+
+    public Song getSong(int position) {
+        return position >= 0 && position < size() ? SongTree.get(root, position) : null;
+    }
+
+    @Override
+    public Song get(int position) {
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("Position " + position + ", size " + size());
+        }
+        return SongTree.get(root, position);
+    }
+
+    @Override
+    public int size() {
+        return SongTree.size(root);
+    }
+
+    @Override
+    public Iterator<Song> iterator() {
+        return SongTree.iterator(root, 0, false);
+    }
+
+    // Balanced splits for parallel streams, each part starting its own walk of
+    // the tree (see PlaylistSpliterator)
+    @Override
+    public Spliterator<Song> spliterator() {
+        return new PlaylistSpliterator(position -> SongTree.iterator(root, position, false), 0, size(),
+                Spliterator.IMMUTABLE);
+    }
+
+    // Save in the playlist file format (see PlaylistFile)
+    public boolean saveToFile(String filename) {
+        try {
+            PlaylistFile.write(filename, name, currentIndex, toArray(new Song[0]), null);
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error saving playlist to " + filename, e);
+            return false;
+        }
+    }
+
+    // A new, editable playlist with these songs
+    public Playlist toPlaylist() {
+        Playlist playlist = new Playlist(name);
+        playlist.addAll(this, 0);
+        playlist.jumpTo(currentIndex);
+        return playlist;
+    }
+}
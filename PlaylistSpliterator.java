@@ -0,0 +1,80 @@
+// PlaylistSpliterator.java
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+// Spliterator over positions [origin, fence) of a song list that can start
+// iterating at any position in O(log n), such as Playlist through its index
+// or PlaylistSnapshot through its tree.
+//
+// trySplit() hands out the first half of the remaining range, so parallel
+// streams split a list of n songs into balanced parts in O(log n) levels,
+// and each part then walks its songs sequentially in O(1) per song. No part
+// starts iterating until it is first traversed.
+class PlaylistSpliterator implements Spliterator<Song> {
+    private static final int MIN_SPLIT = 1 << 10; // smaller ranges are not worth another task
+
+    private final IntFunction<Iterator<Song>> songsFrom;
+    private final int characteristics;
+    private int origin;
+    private final int fence;
+    private Iterator<Song> songs; // positioned at origin once traversal started
+
+    PlaylistSpliterator(IntFunction<Iterator<Song>> songsFrom, int origin, int fence, int characteristics) {
+        this.songsFrom = songsFrom;
+        this.origin = origin;
+        this.fence = fence;
+        this.characteristics = characteristics | ORDERED | SIZED | SUBSIZED | NONNULL;
+    }
+
+    @Override
+    public Spliterator<Song> trySplit() {
+        int middle = (origin + fence) >>> 1;
+        if (middle - origin < MIN_SPLIT) {
+            return null;
+        }
+        PlaylistSpliterator prefix = new PlaylistSpliterator(songsFrom, origin, middle, characteristics);
+        prefix.songs = songs; // already at origin, if started
+        songs = null;
+        origin = middle;
+        return prefix;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Song> action) {
+        if (origin >= fence) {
+            return false;
+        }
+        if (songs == null) {
+            songs = songsFrom.apply(origin);
+        }
+        origin++;
+        action.accept(songs.next());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Song> action) {
+        if (origin >= fence) {
+            return;
+        }
+        Iterator<Song> remaining = songs != null ? songs : songsFrom.apply(origin);
+        int count = fence - origin;
+        origin = fence;
+        songs = null;
+        for (int i = 0; i < count; i++) {
+            action.accept(remaining.next());
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - origin;
+    }
+
+    @Override
+    public int characteristics() {
+        return characteristics;
+    }
+}
@@ -0,0 +1,146 @@
+// PlaylistStats.java
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Aggregates kept up to date by Playlist as songs are added, removed or edited,
+// so none of them needs a walk over the list.
+public class PlaylistStats {
+    private int songCount;
+    private long totalDuration;
+    private final Map<String, Integer> songsPerArtist = new HashMap<>();
+    private final Map<String, Integer> songsPerAlbum = new HashMap<>();
+    private final TreeMap<Integer, Integer> durationCounts = new TreeMap<>();
+
+    void add(Song song) {
+        add(song.getArtist(), song.getAlbum(), song.getDuration());
+    }
+
+    void add(String artist, String album, int duration) {
+        songCount++;
+        totalDuration += duration;
+        increment(songsPerArtist, artist);
+        increment(songsPerAlbum, album);
+        increment(durationCounts, duration);
+    }
+
+    void remove(Song song) {
+        remove(song.getArtist(), song.getAlbum(), song.getDuration());
+    }
+
+    // Replace a song's old field values with its current ones
+    void update(Song song, String oldArtist, String oldAlbum, int oldDuration) {
+        remove(oldArtist, oldAlbum, oldDuration);
+        add(song);
+    }
+
+    void clear() {
+        songCount = 0;
+        totalDuration = 0;
+        songsPerArtist.clear();
+        songsPerAlbum.clear();
+        durationCounts.clear();
+    }
+
+    private void remove(String artist, String album, int duration) {
+        songCount--;
+        totalDuration -= duration;
+        decrement(songsPerArtist, artist);
+        decrement(songsPerAlbum, album);
+        decrement(durationCounts, duration);
+    }
+
+    // Getters
+    public int getSongCount() {
+        return songCount;
+    }
+
+    public long getTotalDuration() {
+        return totalDuration;
+    }
+
+    public int getMinDuration() {
+        return durationCounts.isEmpty() ? 0 : durationCounts.firstKey();
+    }
+
+    public int getMaxDuration() {
+        return durationCounts.isEmpty() ? 0 : durationCounts.lastKey();
+    }
+
+    public double getMeanDuration() {
+        return songCount == 0 ? 0 : (double) totalDuration / songCount;
+    }
+
+    public int getArtistCount() {
+        return songsPerArtist.size();
+    }
+
+    public int getAlbumCount() {
+        return songsPerAlbum.size();
+    }
+
+    public int getSongCountForArtist(String artist) {
+        Integer count = songsPerArtist.get(artist);
+        return count != null ? count : 0;
+    }
+
+    public int getSongCountForAlbum(String album) {
+        Integer count = songsPerAlbum.get(album);
+        return count != null ? count : 0;
+    }
+
+    // Artist and album references per distinct name in this playlist
+    public double getReferencesPerName() {
+        int references = 2 * songCount - getSongCountForArtist(null) - getSongCountForAlbum(null);
+        int distinct = songsPerArtist.size() + songsPerAlbum.size()
+                - (songsPerArtist.containsKey(null) ? 1 : 0) - (songsPerAlbum.containsKey(null) ? 1 : 0);
+        return distinct == 0 ? 0 : (double) references / distinct;
+    }
+
+    // What interning saved, across all playlists: StringInterner is shared
+    public static long getInternHits() {
+        return StringInterner.getHitCount();
+    }
+
+    public static long getInternLookups() {
+        return StringInterner.getLookupCount();
+    }
+
+    // Distinct artist and album names currently pooled
+    public static int getInternedNames() {
+        return StringInterner.getPoolSize();
+    }
+
+    public Map<String, Integer> getSongsPerArtist() {
+        return Collections.unmodifiableMap(songsPerArtist);
+    }
+
+    public Map<String, Integer> getSongsPerAlbum() {
+        return Collections.unmodifiableMap(songsPerAlbum);
+    }
+
+    private static <K> void increment(Map<K, Integer> counts, K key) {
+        counts.merge(key, 1, Integer::sum);
+    }
+
+    private static <K> void decrement(Map<K, Integer> counts, K key) {
+        Integer count = counts.get(key);
+        if (count == null) {
+            return;
+        }
+        if (count <= 1) {
+            counts.remove(key);
+        } else {
+            counts.put(key, count - 1);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Songs: %d | Artists: %d | Albums: %d | Min: %ds | Max: %ds | Mean: %.1fs"
+                        + " | Interned: %d names, %d of %d lookups shared",
+                songCount, getArtistCount(), getAlbumCount(), getMinDuration(), getMaxDuration(), getMeanDuration(),
+                getInternedNames(), getInternHits(), getInternLookups());
+    }
+}
@@ -0,0 +1,267 @@
+// SearchIndex.java
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.regex.Pattern;
+
+// Inverted index over song titles, artists and albums.
+//
+// Each field is split into words and folded to lower case without accents
+// ("Beyoncé" -> "beyonce"); every word maps to the entries that contain it,
+// with one bit per field it was found in. The words are kept sorted, so a
+// query word also matches every indexed word that starts with it, which is
+// what makes type-ahead work. An entry must match all query words. Results
+// are ranked by where the words matched (title, then artist, then album) and
+// by whole-word matches over prefix matches; ties keep the caller's order.
+//
+// Playlist keeps one of these over its nodes (see Playlist.search), or over
+// positions while it is still mapped from a file; forCatalog indexes a
+// SongCatalog by song id.
+public class SearchIndex<T> {
+    private static final int TITLE = 1;
+    private static final int ARTIST = 2;
+    private static final int ALBUM = 4;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final int SCAN_THRESHOLD = 1 << 20; // candidate x word lookups before scoring a word in full
+
+    private final TreeMap<String, Map<T, Integer>> postings = new TreeMap<>();
+
+    // Index every song of a catalog by id. The index does not follow edits,
+    // so call remove and add around any change made to the catalog afterwards.
+    public static SearchIndex<Integer> forCatalog(SongCatalog catalog) {
+        SearchIndex<Integer> index = new SearchIndex<>();
+        for (int id = 0; id < catalog.size(); id++) {
+            index.add(id, catalog.getTitle(id), catalog.getArtist(id), catalog.getAlbum(id));
+        }
+        return index;
+    }
+
+    public void add(T entry, String title, String artist, String album) {
+        addField(entry, title, TITLE);
+        addField(entry, artist, ARTIST);
+        addField(entry, album, ALBUM);
+    }
+
+    // Remove an entry; the field values must be the ones it was added with
+    public void remove(T entry, String title, String artist, String album) {
+        removeField(entry, title);
+        removeField(entry, artist);
+        removeField(entry, album);
+    }
+
+    public void clear() {
+        postings.clear();
+    }
+
+    // The same index with each entry replaced by convert(entry); costs no
+    // tokenizing, so it is much cheaper than indexing the songs again
+    public <U> SearchIndex<U> convert(Function<? super T, ? extends U> convert) {
+        SearchIndex<U> converted = new SearchIndex<>();
+        for (Map.Entry<String, Map<T, Integer>> term : postings.entrySet()) {
+            Map<U, Integer> entries = new HashMap<>(term.getValue().size() * 4 / 3 + 1);
+            for (Map.Entry<T, Integer> posting : term.getValue().entrySet()) {
+                entries.put(convert.apply(posting.getKey()), posting.getValue());
+            }
+            converted.postings.put(term.getKey(), entries);
+        }
+        return converted;
+    }
+
+    // Number of distinct indexed words
+    public int getWordCount() {
+        return postings.size();
+    }
+
+    // Best matches for query, best first; at most limit of them.
+    // Ties between equally ranked entries go to the lower order key.
+    public List<T> search(String query, int limit, final ToIntFunction<? super T> order) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        // Drive the search from the word with the fewest postings
+        List<SortedMap<String, Map<T, Integer>>> ranges = new ArrayList<>();
+        int driver = 0;
+        long fewest = Long.MAX_VALUE;
+        for (String word : words) {
+            SortedMap<String, Map<T, Integer>> range = postings.subMap(word, word + Character.MAX_VALUE);
+            long count = 0;
+            for (Map<T, Integer> entries : range.values()) {
+                count += entries.size();
+            }
+            if (count == 0) {
+                return new ArrayList<>();
+            }
+            if (count < fewest) {
+                fewest = count;
+                driver = ranges.size();
+            }
+            ranges.add(range);
+        }
+
+        final Map<T, Integer> totals = scores(words.get(driver), ranges.get(driver));
+        for (int i = 0; i < words.size() && !totals.isEmpty(); i++) {
+            if (i != driver) {
+                combine(totals, words.get(i), ranges.get(i));
+            }
+        }
+
+        // Keep the best limit entries in a heap whose head is the worst of them
+        final Map<T, Integer> keys = new HashMap<>();
+        Comparator<T> ranking = new Comparator<T>() {
+            @Override
+            public int compare(T a, T b) {
+                int byScore = Integer.compare(totals.get(b), totals.get(a));
+                return byScore != 0 ? byScore : Integer.compare(key(a), key(b));
+            }
+
+            private int key(T entry) {
+                Integer key = keys.get(entry);
+                if (key == null) {
+                    key = order.applyAsInt(entry);
+                    keys.put(entry, key);
+                }
+                return key;
+            }
+        };
+        PriorityQueue<T> best = new PriorityQueue<>(Math.min(limit, totals.size()) + 1, Collections.reverseOrder(ranking));
+        for (T entry : totals.keySet()) {
+            best.add(entry);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+
+        List<T> results = new ArrayList<>(best);
+        Collections.sort(results, ranking);
+        return results;
+    }
+
+    // Entries with a word starting with word, scored by their best such match
+    private Map<T, Integer> scores(String word, SortedMap<String, Map<T, Integer>> range) {
+        Map<T, Integer> scores = new HashMap<>();
+        for (Map.Entry<String, Map<T, Integer>> term : range.entrySet()) {
+            boolean exact = term.getKey().length() == word.length();
+            for (Map.Entry<T, Integer> posting : term.getValue().entrySet()) {
+                int score = score(posting.getValue(), exact);
+                Integer previous = scores.get(posting.getKey());
+                if (previous == null || previous < score) {
+                    scores.put(posting.getKey(), score);
+                }
+            }
+        }
+        return scores;
+    }
+
+    // Add the score for another word to each candidate, dropping candidates it does not match
+    private void combine(Map<T, Integer> totals, String word, SortedMap<String, Map<T, Integer>> range) {
+        if ((long) totals.size() * range.size() > SCAN_THRESHOLD) {
+            // Many candidates and many words with this prefix: score the word once
+            Map<T, Integer> scores = scores(word, range);
+            for (Iterator<Map.Entry<T, Integer>> it = totals.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<T, Integer> candidate = it.next();
+                Integer score = scores.get(candidate.getKey());
+                if (score == null) {
+                    it.remove();
+                } else {
+                    candidate.setValue(candidate.getValue() + score);
+                }
+            }
+            return;
+        }
+
+        // Otherwise look each candidate up in the few matching words
+        for (Iterator<Map.Entry<T, Integer>> it = totals.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<T, Integer> candidate = it.next();
+            int best = 0;
+            for (Map.Entry<String, Map<T, Integer>> term : range.entrySet()) {
+                Integer fields = term.getValue().get(candidate.getKey());
+                if (fields != null) {
+                    best = Math.max(best, score(fields, term.getKey().length() == word.length()));
+                }
+            }
+            if (best == 0) {
+                it.remove();
+            } else {
+                candidate.setValue(candidate.getValue() + best);
+            }
+        }
+    }
+
+    // Title beats artist beats album; a whole word counts double
+    private static int score(int fields, boolean exact) {
+        return weight(fields) * (exact ? 2 : 1);
+    }
+
+    private static int weight(int fields) {
+        if ((fields & TITLE) != 0) {
+            return 3;
+        }
+        return (fields & ARTIST) != 0 ? 2 : 1;
+    }
+
+    private void addField(T entry, String value, int field) {
+        for (String word : tokenize(value)) {
+            Map<T, Integer> entries = postings.get(word);
+            if (entries == null) {
+                entries = new HashMap<>(2);
+                postings.put(word, entries);
+            }
+            Integer fields = entries.get(entry);
+            entries.put(entry, fields != null ? fields | field : field);
+        }
+    }
+
+    private void removeField(T entry, String value) {
+        for (String word : tokenize(value)) {
+            Map<T, Integer> entries = postings.get(word);
+            if (entries != null) {
+                entries.remove(entry);
+                if (entries.isEmpty()) {
+                    postings.remove(word);
+                }
+            }
+        }
+    }
+
+    // Lower-case, accent-free words of value
+    static List<String> tokenize(String value) {
+        List<String> words = new ArrayList<>();
+        if (value == null || value.isEmpty()) {
+            return words;
+        }
+        String folded = value;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0x7F) {
+                // Split accented letters into letter + mark, then drop the marks
+                folded = MARKS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("");
+                break;
+            }
+        }
+
+        // Words are runs of letters and digits
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean inWord = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (inWord && start == -1) {
+                start = i;
+            } else if (!inWord && start != -1) {
+                words.add(folded.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
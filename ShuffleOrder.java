@@ -0,0 +1,75 @@
+// ShuffleOrder.java
+
+// A pseudo-random permutation of the positions 0..size-1, computed one
+// entry at a time instead of being stored.
+//
+// The permutation is a small Feistel network over the smallest power-of-four
+// domain that holds size; results outside 0..size-1 are fed through again
+// ("cycle walking") until they land inside, which takes under four rounds on
+// average. Running the network backwards gives the inverse, so both "which
+// position comes at step r" and "at which step is position p" cost O(1) time
+// and no memory. The same seed and size always give the same order.
+class ShuffleOrder {
+    private static final int ROUNDS = 4;
+
+    private ShuffleOrder() {
+    }
+
+    // Position played at step rank
+    static int position(long seed, int size, int rank) {
+        int halfBits = halfBits(size);
+        int value = rank;
+        do {
+            value = encrypt(seed, halfBits, value);
+        } while ((value & 0xFFFFFFFFL) >= size); // the domain can reach 2^32
+        return value;
+    }
+
+    // Step at which position is played
+    static int rank(long seed, int size, int position) {
+        int halfBits = halfBits(size);
+        int value = position;
+        do {
+            value = decrypt(seed, halfBits, value);
+        } while ((value & 0xFFFFFFFFL) >= size); // the domain can reach 2^32
+        return value;
+    }
+
+    // Half the bit width of the domain, so that both halves have the same size
+    private static int halfBits(int size) {
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, size - 1));
+        return Math.max(1, (bits + 1) / 2);
+    }
+
+    private static int encrypt(long seed, int halfBits, int value) {
+        int mask = (1 << halfBits) - 1;
+        int left = value >>> halfBits;
+        int right = value & mask;
+        for (int round = 0; round < ROUNDS; round++) {
+            int next = left ^ (mix(seed, round, right) & mask);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private static int decrypt(long seed, int halfBits, int value) {
+        int mask = (1 << halfBits) - 1;
+        int left = value >>> halfBits;
+        int right = value & mask;
+        for (int round = ROUNDS - 1; round >= 0; round--) {
+            int previous = right ^ (mix(seed, round, left) & mask);
+            right = left;
+            left = previous;
+        }
+        return (left << halfBits) | right;
+    }
+
+    // Round function: a 64-bit finalizer (as in SplittableRandom) over seed, round and input
+    private static int mix(long seed, int round, int value) {
+        long z = seed + (round + 1) * 0x9E3779B97F4A7C15L + value;
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return (int) (z ^ (z >>> 33));
+    }
+}
@@ -0,0 +1,574 @@
+// SmartPlaylist.java
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+// A rule-based, read-only view over a Playlist or a SongCatalog: the source
+// songs that pass a filter, in source order or sorted by a comparator.
+//
+//   SmartPlaylist shortQueen = new SmartPlaylist("Short Queen", library,
+//           song -> "Queen".equals(song.getArtist()) && song.getDuration() < 240,
+//           Song.BY_ALBUM);
+//
+// Nothing is evaluated until the view is first read. From then on it listens
+// to its playlist and updates itself from each change event, testing only
+// the songs that were inserted or changed, so a view costs memory only for
+// the songs it matches and hundreds of them over one large library stay cheap.
+// getSong(i) is O(log n); iteration is O(1) per song. Songs that compare equal
+// keep their source order.
+//
+// Matches are kept in an order-statistic treap in source order. Each entry
+// stores the distance to the previous match's source position rather than
+// its own, so inserting or removing source songs only changes the entry that
+// follows them. Sorted views keep the same entries in a second treap in
+// comparator order.
+//
+// A view over a SongCatalog does not listen to it: it picks up songs appended
+// to it whenever it is read, and songChanged(id) must be called after editing one.
+// A song object that appears more than once in a sorted view is re-sorted as
+// each of its entries reports the edit. Like Playlist, a view is not
+// thread-safe.
+public class SmartPlaylist implements PlaylistListener, Iterable<Song> {
+    private final String name;
+    private final Playlist playlist;
+    private final SongCatalog catalog;
+    private final Predicate<? super Song> filter;
+    private final Comparator<? super Song> order;
+
+    private RankTree bySource; // null until the view is first read
+    private RankTree byOrder; // only for sorted views
+    private int catalogSize; // catalog songs evaluated so far
+
+    public SmartPlaylist(String name, Playlist source, Predicate<? super Song> filter,
+            Comparator<? super Song> order) {
+        this(name, source, null, filter, order);
+    }
+
+    public SmartPlaylist(String name, SongCatalog source, Predicate<? super Song> filter,
+            Comparator<? super Song> order) {
+        this(name, null, source, filter, order);
+    }
+
+    private SmartPlaylist(String name, Playlist playlist, SongCatalog catalog,
+            Predicate<? super Song> filter, Comparator<? super Song> order) {
+        if (filter == null) {
+            throw new IllegalArgumentException("A smart playlist needs a filter");
+        }
+        this.name = name;
+        this.playlist = playlist;
+        this.catalog = catalog;
+        this.filter = filter;
+        this.order = order;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSize() {
+        evaluate();
+        return bySource.size();
+    }
+
+    // Song at position in the view, or null for a position out of range
+    public Song getSong(int position) {
+        Entry entry = entry(position);
+        return entry != null ? entry.song : null;
+    }
+
+    // Where the song at position in the view is in the source playlist (its
+    // catalog id for a catalog view), or -1 for a position out of range
+    public int getSourcePosition(int position) {
+        Entry entry = entry(position);
+        return entry != null ? bySource.positionOf(entry.bySource) : -1;
+    }
+
+    @Override
+    public Iterator<Song> iterator() {
+        evaluate();
+        final RankTree tree = byOrder != null ? byOrder : bySource;
+        return new Iterator<Song>() {
+            private Link next = tree.get(0);
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Song next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Song song = next.entry.song;
+                next = RankTree.successor(next);
+                return song;
+            }
+        };
+    }
+
+    // A new, editable playlist with the view's current songs
+    public Playlist toPlaylist() {
+        List<Song> songs = new ArrayList<>(getSize());
+        for (Song song : this) {
+            songs.add(song);
+        }
+        Playlist copy = new Playlist(name);
+        copy.addAll(songs, 0);
+        return copy;
+    }
+
+    // Re-test the catalog song with the given id after it was edited
+    public void songChanged(int id) {
+        if (bySource != null && id >= 0 && id < catalogSize) {
+            update(id, id);
+        }
+    }
+
+    // Stop following the source playlist; the view keeps its current songs
+    public void close() {
+        if (playlist != null) {
+            playlist.removePlaylistListener(this);
+        }
+    }
+
+    // Playlist events, positions as described in PlaylistListener
+
+    @Override
+    public void songsInserted(Playlist source, int fromIndex, int toIndex) {
+        if (bySource != null) {
+            insert(fromIndex, toIndex);
+        }
+    }
+
+    @Override
+    public void songsRemoved(Playlist source, int fromIndex, int toIndex) {
+        if (bySource == null) {
+            return;
+        }
+        int rank = bySource.countBefore(fromIndex);
+        Link link = bySource.get(rank);
+        while (link != null && bySource.positionOf(link) <= toIndex) {
+            Link next = RankTree.successor(link);
+            removeMatch(link.entry);
+            link = next;
+        }
+        shift(fromIndex, -(toIndex - fromIndex + 1));
+    }
+
+    @Override
+    public void songsChanged(Playlist source, int fromIndex, int toIndex) {
+        if (bySource != null) {
+            update(fromIndex, toIndex);
+        }
+    }
+
+    @Override
+    public void currentSongChanged(Playlist source) {
+        // A view has no current song
+    }
+
+    // Build the view on first use; for a catalog, also take in appended songs
+    private void evaluate() {
+        if (bySource == null) {
+            bySource = new RankTree();
+            if (order != null) {
+                byOrder = new RankTree();
+            }
+            build();
+            if (playlist != null) {
+                playlist.addPlaylistListener(this);
+            }
+        } else if (catalog != null && catalog.size() > catalogSize) {
+            int from = catalogSize;
+            catalogSize = catalog.size();
+            insert(from, catalogSize - 1);
+        }
+    }
+
+    private void build() {
+        int size = sourceSize();
+        List<Entry> matches = new ArrayList<>();
+        int previous = -1;
+        Iterator<Song> songs = sourceSongs(0);
+        for (int position = 0; position < size; position++) {
+            Song song = songs.next();
+            if (filter.test(song)) {
+                Entry entry = new Entry(song, order != null);
+                entry.bySource.gap = position - previous;
+                bySource.insert(bySource.size(), entry.bySource);
+                matches.add(entry);
+                previous = position;
+            }
+        }
+        if (catalog != null) {
+            catalogSize = size;
+        }
+
+        if (byOrder != null) {
+            // Stable, so equal songs stay in source order
+            Collections.sort(matches, new Comparator<Entry>() {
+                @Override
+                public int compare(Entry a, Entry b) {
+                    return order.compare(a.song, b.song);
+                }
+            });
+            for (Entry entry : matches) {
+                byOrder.insert(byOrder.size(), entry.byOrder);
+            }
+        }
+    }
+
+    private Entry entry(int position) {
+        evaluate();
+        Link link = (byOrder != null ? byOrder : bySource).get(position);
+        return link != null ? link.entry : null;
+    }
+
+    // Source songs [from, to] were inserted
+    private void insert(int from, int to) {
+        shift(from, to - from + 1);
+        Iterator<Song> songs = sourceSongs(from);
+        for (int position = from; position <= to; position++) {
+            Song song = songs.next();
+            if (filter.test(song)) {
+                addMatch(position, song);
+            }
+        }
+    }
+
+    // Source songs [from, to] were replaced, reordered or edited: test them again
+    private void update(int from, int to) {
+        Iterator<Song> songs = sourceSongs(from);
+        for (int position = from; position <= to; position++) {
+            Song song = songs.next();
+            boolean matches = filter.test(song);
+            Entry entry = matchAt(position);
+            if (entry == null) {
+                if (matches) {
+                    addMatch(position, song);
+                }
+            } else if (!matches) {
+                removeMatch(entry);
+            } else if (byOrder != null) {
+                // Its sort key may have changed; take it out before comparing
+                byOrder.remove(entry.byOrder);
+                entry.song = song;
+                insertOrdered(entry, position);
+            } else {
+                entry.song = song;
+            }
+        }
+    }
+
+    // Move the matches at or after source position by delta
+    private void shift(int position, int delta) {
+        Link next = bySource.get(bySource.countBefore(position));
+        if (next != null) {
+            next.gap += delta;
+            bySource.pullUp(next);
+        }
+    }
+
+    private Entry matchAt(int position) {
+        Link link = bySource.get(bySource.countBefore(position));
+        return link != null && bySource.positionOf(link) == position ? link.entry : null;
+    }
+
+    private void addMatch(int position, Song song) {
+        Entry entry = new Entry(song, byOrder != null);
+        int rank = bySource.countBefore(position);
+        int previous = rank > 0 ? bySource.positionOf(bySource.get(rank - 1)) : -1;
+        entry.bySource.gap = position - previous;
+        Link next = bySource.get(rank);
+        if (next != null) {
+            next.gap -= entry.bySource.gap;
+            bySource.pullUp(next);
+        }
+        bySource.insert(rank, entry.bySource);
+        if (byOrder != null) {
+            insertOrdered(entry, position);
+        }
+    }
+
+    private void removeMatch(Entry entry) {
+        Link next = RankTree.successor(entry.bySource);
+        if (next != null) {
+            next.gap += entry.bySource.gap;
+            bySource.pullUp(next);
+        }
+        bySource.remove(entry.bySource);
+        if (byOrder != null) {
+            byOrder.remove(entry.byOrder);
+        }
+    }
+
+    // Find the entry's place by comparator, breaking ties by source position
+    private void insertOrdered(Entry entry, int position) {
+        int rank = 0;
+        Link node = byOrder.root;
+        while (node != null) {
+            int c = order.compare(entry.song, node.entry.song);
+            if (c == 0) {
+                c = Integer.compare(position, bySource.positionOf(node.entry.bySource));
+            }
+            if (c < 0) {
+                node = node.left;
+            } else {
+                rank += RankTree.weight(node.left) + 1;
+                node = node.right;
+            }
+        }
+        byOrder.insert(rank, entry.byOrder);
+    }
+
+    private int sourceSize() {
+        return playlist != null ? playlist.getSize() : catalog.size();
+    }
+
+    // Source songs from position on, following the playlist's node chain
+    // rather than looking each position up
+    private Iterator<Song> sourceSongs(final int position) {
+        final Node first = playlist != null ? playlist.getNode(position) : null;
+        return new Iterator<Song>() {
+            private Node node = first;
+            private int id = position;
+
+            @Override
+            public boolean hasNext() {
+                return playlist != null ? node != null : id < catalog.size();
+            }
+
+            @Override
+            public Song next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (playlist == null) {
+                    return catalog.getSong(id++);
+                }
+                Song song = node.getSong();
+                node = node.getNext();
+                return song;
+            }
+        };
+    }
+
+    // One matching source song, linked into each of the view's trees
+    private static final class Entry {
+        Song song;
+        final Link bySource;
+        final Link byOrder;
+
+        Entry(Song song, boolean sorted) {
+            this.song = song;
+            this.bySource = new Link(this);
+            this.byOrder = sorted ? new Link(this) : null;
+        }
+    }
+
+    private static final class Link {
+        final Entry entry;
+        Link left;
+        Link right;
+        Link parent;
+        int weight = 1; // number of links in this subtree
+        int gap; // source position minus that of the previous match (-1 before the first)
+        int span; // sum of gaps in this subtree
+        int priority;
+
+        Link(Entry entry) {
+            this.entry = entry;
+        }
+    }
+
+    // Implicit treap of links with parent pointers, as in PlaylistIndex. In
+    // the source-order tree the gaps turn ranks into source positions.
+    private static final class RankTree {
+        Link root;
+        private int seed = 0x9E3779B9;
+
+        int size() {
+            return weight(root);
+        }
+
+        Link get(int rank) {
+            if (rank < 0 || rank >= size()) {
+                return null;
+            }
+            Link current = root;
+            while (current != null) {
+                int leftWeight = weight(current.left);
+                if (rank < leftWeight) {
+                    current = current.left;
+                } else if (rank == leftWeight) {
+                    return current;
+                } else {
+                    rank -= leftWeight + 1;
+                    current = current.right;
+                }
+            }
+            return null;
+        }
+
+        // Source position of a link in the source-order tree
+        int positionOf(Link link) {
+            int position = span(link.left) + link.gap;
+            for (Link current = link; current.parent != null; current = current.parent) {
+                if (current == current.parent.right) {
+                    position += span(current.parent.left) + current.parent.gap;
+                }
+            }
+            return position - 1;
+        }
+
+        // Number of links in the source-order tree before source position
+        int countBefore(int position) {
+            int count = 0;
+            int before = -1; // source position just before the current subtree
+            Link current = root;
+            while (current != null) {
+                int own = before + span(current.left) + current.gap;
+                if (own < position) {
+                    count += weight(current.left) + 1;
+                    before = own;
+                    current = current.right;
+                } else {
+                    current = current.left;
+                }
+            }
+            return count;
+        }
+
+        void insert(int rank, Link link) {
+            link.left = null;
+            link.right = null;
+            link.parent = null;
+            link.priority = nextPriority();
+            pull(link);
+            Link[] parts = split(root, rank);
+            root = merge(merge(parts[0], link), parts[1]);
+            root.parent = null;
+        }
+
+        // Replace the link by the merge of its two subtrees
+        void remove(Link link) {
+            Link replacement = merge(link.left, link.right);
+            Link parent = link.parent;
+            if (replacement != null) {
+                replacement.parent = parent;
+            }
+            if (parent == null) {
+                root = replacement;
+            } else if (parent.left == link) {
+                parent.left = replacement;
+            } else {
+                parent.right = replacement;
+            }
+            pullUp(parent);
+            link.left = null;
+            link.right = null;
+            link.parent = null;
+        }
+
+        // Refresh the sums above a link whose gap changed
+        void pullUp(Link link) {
+            for (Link current = link; current != null; current = current.parent) {
+                pull(current);
+            }
+        }
+
+        static Link successor(Link link) {
+            if (link.right != null) {
+                Link current = link.right;
+                while (current.left != null) {
+                    current = current.left;
+                }
+                return current;
+            }
+            Link current = link;
+            while (current.parent != null && current == current.parent.right) {
+                current = current.parent;
+            }
+            return current.parent;
+        }
+
+        private Link merge(Link a, Link b) {
+            if (a == null) {
+                return b;
+            }
+            if (b == null) {
+                return a;
+            }
+            if (a.priority > b.priority) {
+                Link right = merge(a.right, b);
+                a.right = right;
+                right.parent = a;
+                pull(a);
+                return a;
+            }
+            Link left = merge(a, b.left);
+            b.left = left;
+            left.parent = b;
+            pull(b);
+            return b;
+        }
+
+        // Split into the first count links and the rest
+        private Link[] split(Link link, int count) {
+            if (link == null) {
+                return new Link[] { null, null };
+            }
+            Link[] parts;
+            if (weight(link.left) >= count) {
+                parts = split(link.left, count);
+                link.left = parts[1];
+                if (parts[1] != null) {
+                    parts[1].parent = link;
+                }
+                pull(link);
+                parts[1] = link;
+            } else {
+                parts = split(link.right, count - weight(link.left) - 1);
+                link.right = parts[0];
+                if (parts[0] != null) {
+                    parts[0].parent = link;
+                }
+                pull(link);
+                parts[0] = link;
+            }
+            if (parts[0] != null) {
+                parts[0].parent = null;
+            }
+            if (parts[1] != null) {
+                parts[1].parent = null;
+            }
+            return parts;
+        }
+
+        private static void pull(Link link) {
+            link.weight = weight(link.left) + weight(link.right) + 1;
+            link.span = span(link.left) + span(link.right) + link.gap;
+        }
+
+        private int nextPriority() {
+            // xorshift32, as in PlaylistIndex
+            seed ^= seed << 13;
+            seed ^= seed >>> 17;
+            seed ^= seed << 5;
+            return seed;
+        }
+
+        static int weight(Link link) {
+            return link != null ? link.weight : 0;
+        }
+
+        private static int span(Link link) {
+            return link != null ? link.span : 0;
+        }
+    }
+}
@@ -1,17 +1,66 @@
 // Song.java
+import java.util.Arrays;
+import java.util.Comparator;
+
 public class Song {
+    // Orderings for Playlist.sort; combine them with thenComparing for multi-key sorts.
+    // Text compares ignore case, and songs with a missing value sort first.
+    public static final Comparator<Song> BY_TITLE = new Comparator<Song>() {
+        @Override
+        public int compare(Song a, Song b) {
+            return compareText(a.getTitle(), b.getTitle());
+        }
+    };
+
+    public static final Comparator<Song> BY_ARTIST = new Comparator<Song>() {
+        @Override
+        public int compare(Song a, Song b) {
+            return compareText(a.getArtist(), b.getArtist());
+        }
+    };
+
+    public static final Comparator<Song> BY_ALBUM = new Comparator<Song>() {
+        @Override
+        public int compare(Song a, Song b) {
+            return compareText(a.getAlbum(), b.getAlbum());
+        }
+    };
+
+    public static final Comparator<Song> BY_DURATION = new Comparator<Song>() {
+        @Override
+        public int compare(Song a, Song b) {
+            return Integer.compare(a.getDuration(), b.getDuration());
+        }
+    };
+
+    private static final SongListener[] NO_LISTENERS = new SongListener[0];
+
     private String title;
     private String artist;
     private String album;
     private int duration; // in seconds
+    private SongListener[] listeners = NO_LISTENERS; // first listenerCount slots used
+    private int listenerCount;
+    private int firing; // while > 0, changes to the listeners go to a copy of the array
 
+    // Artist and album names repeat across songs, so they share pooled instances
     public Song(String title, String artist, String album, int duration) {
+        this(title, artist, album, duration, false);
+    }
+
+    private Song(String title, String artist, String album, int duration, boolean interned) {
         this.title = title;
-        this.artist = artist;
-        this.album = album;
+        this.artist = interned ? artist : StringInterner.intern(artist);
+        this.album = interned ? album : StringInterner.intern(album);
         this.duration = duration;
     }
 
+    // A song whose artist and album the caller already got from StringInterner,
+    // e.g. once per file dictionary entry, so creating it skips the shared pool
+    static Song withInternedNames(String title, String artist, String album, int duration) {
+        return new Song(title, artist, album, duration, true);
+    }
+
     // Getters
     public String getTitle() {
         return title;
@@ -31,31 +80,95 @@ public class Song {
 
     // Setters
     public void setTitle(String title) {
+        String oldTitle = this.title;
         this.title = title;
+        fireSongChanged(oldTitle, artist, album, duration);
     }
 
     public void setArtist(String artist) {
-        this.artist = artist;
+        String oldArtist = this.artist;
+        this.artist = StringInterner.intern(artist);
+        fireSongChanged(title, oldArtist, album, duration);
     }
 
     public void setAlbum(String album) {
-        this.album = album;
+        String oldAlbum = this.album;
+        this.album = StringInterner.intern(album);
+        fireSongChanged(title, artist, oldAlbum, duration);
     }
 
     public void setDuration(int duration) {
+        int oldDuration = this.duration;
         this.duration = duration;
+        fireSongChanged(title, artist, album, oldDuration);
+    }
+
+    // Listeners - a song has one per playlist entry. The array doubles as it
+    // fills, so adding is amortized O(1) even when one song is added to a
+    // playlist many times; a song in a single playlist keeps an array of one.
+    public void addSongListener(SongListener listener) {
+        if (listenerCount == listeners.length || firing > 0) {
+            int capacity = listenerCount == listeners.length ? Math.max(1, 2 * listenerCount) : listeners.length;
+            listeners = Arrays.copyOf(listeners, capacity);
+        }
+        listeners[listenerCount++] = listener;
+    }
+
+    public void removeSongListener(SongListener listener) {
+        // Search from the end: the latest entry is usually the first one removed
+        for (int i = listenerCount - 1; i >= 0; i--) {
+            if (listeners[i] == listener) {
+                if (listenerCount == 1) {
+                    listeners = NO_LISTENERS;
+                } else {
+                    if (firing > 0) {
+                        listeners = listeners.clone();
+                    }
+                    System.arraycopy(listeners, i + 1, listeners, i, listenerCount - i - 1);
+                    listeners[listenerCount - 1] = null;
+                }
+                listenerCount--;
+                return;
+            }
+        }
+    }
+
+    boolean hasSongListeners() {
+        return listenerCount > 0;
+    }
+
+    // Also used by views such as CatalogSong that keep their fields elsewhere
+    void fireSongChanged(String oldTitle, String oldArtist, String oldAlbum, int oldDuration) {
+        // Listeners added or removed meanwhile change a copy, not this array
+        SongListener[] current = listeners;
+        int count = listenerCount;
+        firing++;
+        try {
+            for (int i = 0; i < count; i++) {
+                current[i].songChanged(this, oldTitle, oldArtist, oldAlbum, oldDuration);
+            }
+        } finally {
+            firing--;
+        }
+    }
+
+    private static int compareText(String a, String b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return String.CASE_INSENSITIVE_ORDER.compare(a, b);
     }
 
     // Format duration from seconds to mm:ss
     public String getFormattedDuration() {
-        int minutes = duration / 60;
-        int seconds = duration % 60;
+        int minutes = getDuration() / 60;
+        int seconds = getDuration() % 60;
         return String.format("%d:%02d", minutes, seconds);
     }
 
     @Override
     public String toString() {
         return String.format("Title: %s | Artist: %s | Album: %s | Duration: %s", 
-                title, artist, album, getFormattedDuration());
+                getTitle(), getArtist(), getAlbum(), getFormattedDuration());
     }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+// SongCatalog.java
+
+// A song library addressed by int ids (0 .. size-1), shared by CatalogPlaylists.
+// CompactSongCatalog keeps the songs in int arrays on the heap;
+// OffHeapSongCatalog keeps them in direct memory outside the garbage-collected heap.
+// Both report edits to the listeners of their CatalogSong views.
+public interface SongCatalog {
+    // Add a song and return its id
+    int add(String title, String artist, String album, int duration);
+
+    default int add(Song song) {
+        return add(song.getTitle(), song.getArtist(), song.getAlbum(), song.getDuration());
+    }
+
+    int size();
+
+    // View of the song with the given id. Setters, of the view or of the
+    // catalog, notify the listeners of every view of the id.
+    CatalogSong getSong(int id);
+
+    // Field access by song id
+    String getTitle(int id);
+
+    String getArtist(int id);
+
+    String getAlbum(int id);
+
+    int getDuration(int id);
+
+    void setTitle(int id, String title);
+
+    void setArtist(int id, String artist);
+
+    void setAlbum(int id, String album);
+
+    void setDuration(int id, int duration);
+}
@@ -0,0 +1,101 @@
+// SongKeyIndex.java
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Case-insensitive (title, artist) -> node lookup for a playlist.
+// Most keys map to a single node, so the map value is either a Node or,
+// for duplicate entries, a List of nodes.
+class SongKeyIndex {
+    private final Map<String, Object> nodesByKey = new HashMap<>();
+
+    public void add(Node node) {
+        add(key(node.getSong().getTitle(), node.getSong().getArtist()), node);
+    }
+
+    public void remove(Node node) {
+        remove(key(node.getSong().getTitle(), node.getSong().getArtist()), node);
+    }
+
+    // Re-file a node whose song's title or artist changed
+    public void update(Node node, String oldTitle, String oldArtist) {
+        String oldKey = key(oldTitle, oldArtist);
+        String newKey = key(node.getSong().getTitle(), node.getSong().getArtist());
+        if (!oldKey.equals(newKey)) {
+            remove(oldKey, node);
+            add(newKey, node);
+        }
+    }
+
+    public void clear() {
+        nodesByKey.clear();
+    }
+
+    // All nodes whose song matches, in no particular order
+    @SuppressWarnings("unchecked")
+    public List<Node> find(String title, String artist) {
+        Object value = nodesByKey.get(key(title, artist));
+        if (value == null) {
+            return new ArrayList<>();
+        }
+        if (value instanceof Node) {
+            List<Node> nodes = new ArrayList<>(1);
+            nodes.add((Node) value);
+            return nodes;
+        }
+        return new ArrayList<>((List<Node>) value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void add(String key, Node node) {
+        Object value = nodesByKey.get(key);
+        if (value == null) {
+            nodesByKey.put(key, node);
+        } else if (value instanceof Node) {
+            List<Node> nodes = new ArrayList<>(2);
+            nodes.add((Node) value);
+            nodes.add(node);
+            nodesByKey.put(key, nodes);
+        } else {
+            ((List<Node>) value).add(node);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void remove(String key, Node node) {
+        Object value = nodesByKey.get(key);
+        if (value == node) {
+            nodesByKey.remove(key);
+        } else if (value instanceof List) {
+            List<Node> nodes = (List<Node>) value;
+            for (int i = 0; i < nodes.size(); i++) {
+                if (nodes.get(i) == node) {
+                    nodes.remove(i);
+                    break;
+                }
+            }
+            if (nodes.size() == 1) {
+                nodesByKey.put(key, nodes.get(0));
+            }
+        }
+    }
+
+    // Fold case the same way String.equalsIgnoreCase compares characters
+    static String key(String title, String artist) {
+        StringBuilder key = new StringBuilder();
+        fold(key, title);
+        key.append('\u0000');
+        fold(key, artist);
+        return key.toString();
+    }
+
+    private static void fold(StringBuilder key, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            key.append(Character.toLowerCase(Character.toUpperCase(value.charAt(i))));
+        }
+    }
+}
@@ -0,0 +1,6 @@
+// SongListener.java
+// Notified after one of a song's fields has been changed through a setter.
+// The old values describe the song as it was before the change.
+public interface SongListener {
+    void songChanged(Song song, String oldTitle, String oldArtist, String oldAlbum, int oldDuration);
+}
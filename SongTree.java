@@ -0,0 +1,281 @@
+// SongTree.java
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Persistent (immutable) implicit treap of songs, keyed by position.
+//
+// A tree is never changed once built. Every operation returns a new root that
+// copies only the O(log n) nodes on the paths it touched and shares every
+// other subtree with the tree it started from, so old versions stay valid and
+// cost nothing to keep. null is the empty tree. Playlist keeps one of these in
+// step with its linked list for snapshots and undo (see PlaylistSnapshot).
+final class SongTree {
+    final Song song;
+    final SongTree left;
+    final SongTree right;
+    final int size;
+    private final int priority;
+
+    private SongTree(Song song, int priority, SongTree left, SongTree right) {
+        this.song = song;
+        this.priority = priority;
+        this.left = left;
+        this.right = right;
+        this.size = size(left) + size(right) + 1;
+    }
+
+    private SongTree with(SongTree newLeft, SongTree newRight) {
+        return new SongTree(song, priority, newLeft, newRight);
+    }
+
+    static int size(SongTree tree) {
+        return tree != null ? tree.size : 0;
+    }
+
+    static Song get(SongTree tree, int position) {
+        while (tree != null) {
+            int leftSize = size(tree.left);
+            if (position < leftSize) {
+                tree = tree.left;
+            } else if (position == leftSize) {
+                return tree.song;
+            } else {
+                position -= leftSize + 1;
+                tree = tree.right;
+            }
+        }
+        throw new IndexOutOfBoundsException("Position " + position);
+    }
+
+    static SongTree insert(SongTree tree, int position, Song song) {
+        return insertAll(tree, position, new SongTree(song, nextPriority(), null, null));
+    }
+
+    // Insert a whole tree so that it starts at position
+    static SongTree insertAll(SongTree tree, int position, SongTree block) {
+        SongTree[] parts = split(tree, position);
+        return merge(merge(parts[0], block), parts[1]);
+    }
+
+    static SongTree remove(SongTree tree, int position) {
+        return removeRange(tree, position, 1);
+    }
+
+    static SongTree removeRange(SongTree tree, int position, int count) {
+        SongTree[] before = split(tree, position);
+        SongTree[] removed = split(before[1], count);
+        return merge(before[0], removed[1]);
+    }
+
+    // Replace the song at position
+    static SongTree set(SongTree tree, int position, Song song) {
+        int leftSize = size(tree.left);
+        if (position < leftSize) {
+            return tree.with(set(tree.left, position, song), tree.right);
+        }
+        if (position > leftSize) {
+            return tree.with(tree.left, set(tree.right, position - leftSize - 1, song));
+        }
+        return new SongTree(song, tree.priority, tree.left, tree.right);
+    }
+
+    // Move the count songs at [from, from + count) so that they start at to
+    static SongTree moveRange(SongTree tree, int from, int count, int to) {
+        SongTree[] before = split(tree, from);
+        SongTree[] block = split(before[1], count);
+        SongTree[] rest = split(merge(before[0], block[1]), to);
+        return merge(merge(rest[0], block[0]), rest[1]);
+    }
+
+    // Tree of the songs of count nodes linked by next from first onwards, in O(count).
+    // Same stack-based Cartesian tree construction as PlaylistIndex, except that a
+    // node is only created once its right subtree is complete.
+    static SongTree build(Node first, int count) {
+        Song[] songs = new Song[count];
+        int[] priorities = new int[count];
+        SongTree[] lefts = new SongTree[count];
+        int top = -1;
+
+        Node node = first;
+        for (int i = 0; i < count; i++, node = node.getNext()) {
+            int priority = nextPriority();
+            SongTree last = null;
+            while (top >= 0 && priorities[top] < priority) {
+                last = new SongTree(songs[top], priorities[top], lefts[top], last);
+                top--;
+            }
+            top++;
+            songs[top] = node.getSong();
+            priorities[top] = priority;
+            lefts[top] = last;
+        }
+
+        SongTree last = null;
+        for (; top >= 0; top--) {
+            last = new SongTree(songs[top], priorities[top], lefts[top], last);
+        }
+        return last;
+    }
+
+    // Songs from position onwards, in order (or backwards from position, if descending)
+    static Iterator<Song> iterator(SongTree tree, int position, final boolean descending) {
+        final Deque<SongTree> path = new ArrayDeque<>();
+        // Stack the nodes from the root down to position that are still to be visited
+        while (tree != null) {
+            int leftSize = size(tree.left);
+            if (position < leftSize) {
+                if (!descending) {
+                    path.push(tree);
+                }
+                tree = tree.left;
+            } else if (position == leftSize) {
+                path.push(tree);
+                tree = null;
+            } else {
+                if (descending) {
+                    path.push(tree);
+                }
+                position -= leftSize + 1;
+                tree = tree.right;
+            }
+        }
+
+        return new Iterator<Song>() {
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public Song next() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                SongTree node = path.pop();
+                for (SongTree child = descending ? node.left : node.right; child != null;
+                        child = descending ? child.right : child.left) {
+                    path.push(child);
+                }
+                return node.song;
+            }
+        };
+    }
+
+    // Length of the longest common prefix (or, fromEnd, suffix) of two trees,
+    // comparing songs by reference. Subtrees the two versions share are skipped
+    // whole, so versions a few edits apart are compared in about O(log n).
+    static int commonLength(SongTree a, SongTree b, boolean fromEnd) {
+        Frontier x = new Frontier(a, fromEnd);
+        Frontier y = new Frontier(b, fromEnd);
+        int common = 0;
+        while (!x.isEmpty() && !y.isEmpty()) {
+            SongTree s = x.peek();
+            SongTree t = y.peek();
+            if (s == t && x.peekAlone() == y.peekAlone()) {
+                common += x.peekAlone() ? 1 : s.size;
+                x.pop();
+                y.pop();
+            } else if (x.peekAlone() && y.peekAlone()) {
+                if (s.song != t.song) {
+                    break;
+                }
+                common++;
+                x.pop();
+                y.pop();
+            } else if (!x.peekAlone() && (y.peekAlone() || s.size >= t.size)) {
+                x.expand();
+            } else {
+                y.expand();
+            }
+        }
+        return common;
+    }
+
+    // The rest of a tree, as a stack of pieces in order: whole subtrees, or a
+    // single node whose left (right, fromEnd) side has already been passed
+    private static final class Frontier {
+        private final boolean fromEnd;
+        private SongTree[] trees = new SongTree[64];
+        private boolean[] alone = new boolean[64];
+        private int top = -1;
+
+        Frontier(SongTree root, boolean fromEnd) {
+            this.fromEnd = fromEnd;
+            push(root, false);
+        }
+
+        boolean isEmpty() {
+            return top < 0;
+        }
+
+        SongTree peek() {
+            return trees[top];
+        }
+
+        boolean peekAlone() {
+            return alone[top];
+        }
+
+        void pop() {
+            top--;
+        }
+
+        // Replace the whole subtree on top by its three parts
+        void expand() {
+            SongTree tree = trees[top--];
+            push(fromEnd ? tree.left : tree.right, false);
+            push(tree, true);
+            push(fromEnd ? tree.right : tree.left, false);
+        }
+
+        private void push(SongTree tree, boolean single) {
+            if (tree == null) {
+                return;
+            }
+            if (++top == trees.length) {
+                trees = Arrays.copyOf(trees, top * 2);
+                alone = Arrays.copyOf(alone, top * 2);
+            }
+            trees[top] = tree;
+            alone[top] = single;
+        }
+    }
+
+    private static SongTree merge(SongTree a, SongTree b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            return a.with(a.left, merge(a.right, b));
+        }
+        return b.with(merge(a, b.left), b.right);
+    }
+
+    // Split into [0, count) and [count, size)
+    private static SongTree[] split(SongTree tree, int count) {
+        if (tree == null) {
+            return new SongTree[] { null, null };
+        }
+        SongTree[] parts;
+        if (size(tree.left) >= count) {
+            parts = split(tree.left, count);
+            parts[1] = tree.with(parts[1], tree.right);
+        } else {
+            parts = split(tree.right, count - size(tree.left) - 1);
+            parts[0] = tree.with(tree.left, parts[0]);
+        }
+        return parts;
+    }
+
+    private static int nextPriority() {
+        // Trees may be built on any thread, e.g. by a background load
+        return ThreadLocalRandom.current().nextInt();
+    }
+}
@@ -0,0 +1,60 @@
+// StringInterner.java
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+// Shared pool for artist and album names.
+//
+// Song runs its artist and album through intern(), so every song by the same
+// artist - whether typed in, loaded from a file or replayed from a journal -
+// points at one String instance instead of its own copy. Entries are weak:
+// a name drops out of the pool once no song uses it any more.
+//
+// The pool is one synchronized WeakHashMap, so every lookup takes a global
+// lock and hashes the name. That is cheap next to creating a Song by hand,
+// but it would serialize bulk loads: PlaylistFile.read and MappedPlaylistFile
+// intern each entry of a file's string dictionary once and create songs with
+// Song.withInternedNames, so a load costs one lookup per distinct name.
+public class StringInterner {
+    private static final Map<String, WeakReference<String>> pool = new WeakHashMap<>();
+    private static long lookups;
+    private static long hits;
+
+    private StringInterner() {
+    }
+
+    // The pooled instance equal to value (value itself if it is new); null stays null
+    public static synchronized String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        lookups++;
+        WeakReference<String> reference = pool.get(value);
+        String pooled = reference != null ? reference.get() : null;
+        if (pooled != null) {
+            hits++;
+            return pooled;
+        }
+        pool.put(value, new WeakReference<>(value));
+        return value;
+    }
+
+    // Distinct names currently pooled
+    public static synchronized int getPoolSize() {
+        return pool.size();
+    }
+
+    public static synchronized long getLookupCount() {
+        return lookups;
+    }
+
+    // Lookups that found an existing instance, i.e. copies avoided
+    public static synchronized long getHitCount() {
+        return hits;
+    }
+
+    // Share of lookups that found an existing instance, i.e. copies avoided
+    public static synchronized double getHitRatio() {
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
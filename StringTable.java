@@ -0,0 +1,39 @@
+// StringTable.java
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Interned strings numbered in the order they were first seen.
+// A catalog stores the returned ids instead of String references, so a
+// string shared by many songs is kept once. Entries are never removed;
+// a value that is no longer used simply keeps its id.
+class StringTable {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] strings = new String[16];
+    private int count;
+
+    // Id of value, adding it if it is new; null is -1
+    int intern(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer id = ids.get(value);
+        if (id == null) {
+            if (count == strings.length) {
+                strings = Arrays.copyOf(strings, count * 2);
+            }
+            id = count;
+            strings[count++] = value;
+            ids.put(value, id);
+        }
+        return id;
+    }
+
+    String get(int id) {
+        return id == -1 ? null : strings[id];
+    }
+
+    int size() {
+        return count;
+    }
+}
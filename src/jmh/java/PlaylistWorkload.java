@@ -0,0 +1,159 @@
+// PlaylistWorkload.java
+import java.io.File;
+import java.io.IOException;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+// The benchmarks.Workload of PlaylistBenchmarks, on a Playlist built by
+// PlaylistBenchmark.createPlaylist. Mutating operations are measured in
+// pairs that leave the playlist as they found it, so every invocation sees
+// a playlist of the same size.
+public class PlaylistWorkload implements benchmarks.Workload {
+    private static final int VISIBLE_ROWS = 30;
+    // Songs to add, used in turn; each is out of the playlist again before
+    // it comes round, so adding one never meets listeners of an earlier add
+    private static final int FRESH_SONGS = 1024;
+
+    private Playlist playlist;
+    private Song[] freshSongs;
+    private int nextFresh;
+    private long random = 0x9E3779B97F4A7C15L;
+    private long seed;
+    private File file;
+    private Playlist other;
+    private PlaylistListModel model;
+    private long events;
+
+    @Override
+    public void setUp(int size) throws IOException {
+        // moveSongUp needs a song above the one it moves
+        playlist = PlaylistBenchmark.createPlaylist("Benchmark", Math.max(size, 2));
+        freshSongs = PlaylistBenchmark.createSongs(FRESH_SONGS);
+        file = File.createTempFile("playlist-benchmark", ".dat");
+        file.deleteOnExit();
+        other = PlaylistBenchmark.createPlaylist("Other", size);
+        model = new PlaylistListModel(playlist);
+        model.addListDataListener(new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent e) {
+                events++;
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) {
+                events++;
+            }
+
+            @Override
+            public void contentsChanged(ListDataEvent e) {
+                events++;
+            }
+        });
+    }
+
+    @Override
+    public void tearDown() {
+        if (file != null) {
+            file.delete();
+        }
+        playlist = null;
+        other = null;
+        model = null;
+        freshSongs = null;
+    }
+
+    // Cheap pseudo-random position in [0, bound)
+    private int nextPosition(int bound) {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (int) ((random >>> 1) % bound);
+    }
+
+    private Song nextFreshSong() {
+        Song song = freshSongs[nextFresh];
+        nextFresh = (nextFresh + 1) % FRESH_SONGS;
+        return song;
+    }
+
+    @Override
+    public long addSongThenRemove() {
+        playlist.addSong(nextFreshSong());
+        int last = playlist.getSize() - 1;
+        playlist.removeSong(last);
+        return last;
+    }
+
+    @Override
+    public long addSongAtThenRemove() {
+        int position = nextPosition(playlist.getSize() + 1);
+        playlist.addSongAt(nextFreshSong(), position);
+        playlist.removeSong(position);
+        return position;
+    }
+
+    @Override
+    public long removeSongThenRestore() {
+        int position = nextPosition(playlist.getSize());
+        Song song = playlist.getSong(position);
+        playlist.removeSong(position);
+        playlist.addSongAt(song, position);
+        return position;
+    }
+
+    @Override
+    public long getSong() {
+        return playlist.getSong(nextPosition(playlist.getSize())).getDuration();
+    }
+
+    @Override
+    public long moveSongUp() {
+        playlist.moveSongUp(1 + nextPosition(playlist.getSize() - 1));
+        return playlist.getCurrentIndex();
+    }
+
+    @Override
+    public long shuffle() {
+        playlist.shuffle(seed++);
+        return playlist.getCurrentIndex();
+    }
+
+    @Override
+    public long getTotalDuration() {
+        return playlist.getTotalDuration();
+    }
+
+    @Override
+    public long stream() {
+        return playlist.stream().mapToLong(Song::getDuration).sum();
+    }
+
+    @Override
+    public long parallelStream() {
+        return playlist.parallelStream().mapToLong(Song::getDuration).sum();
+    }
+
+    @Override
+    public long saveLoad() throws IOException {
+        if (!playlist.saveToFile(file.getPath())) {
+            throw new IOException("save failed");
+        }
+        Playlist loaded = Playlist.loadFromFile(file.getPath());
+        if (loaded == null) {
+            throw new IOException("load failed");
+        }
+        return loaded.getSize();
+    }
+
+    @Override
+    public long modelRefresh() {
+        long hash = 0;
+        Playlist next = model.getPlaylist() == playlist ? other : playlist;
+        model.setPlaylist(next);
+        int rows = Math.min(VISIBLE_ROWS, model.getSize());
+        for (int row = 0; row < rows; row++) {
+            hash += model.getElementAt(row).getDuration();
+        }
+        return hash + events;
+    }
+}
@@ -0,0 +1,108 @@
+// PlaylistBenchmarks.java
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// JMH benchmarks for the Playlist operations, at every size in @Param.
+//
+//   gradle jmh
+//   java -jar build/libs/music-playlist-manager-jmh.jar PlaylistBenchmarks.getSong -p size=10,10000000 -prof gc
+//
+// build.gradle turns on the gc profiler for gradle jmh, which adds
+// gc.alloc.rate (MB/s) and gc.alloc.rate.norm (bytes per operation) to each
+// result, and writes the results as CSV to build/results/jmh for comparing
+// a baseline with a later run. addSong, addSongAt and removeSong change the
+// size of the playlist, so each is measured together with the operation
+// that undoes it; see Workload.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+public class PlaylistBenchmarks {
+    @Param({"10", "1000", "100000", "1000000", "10000000"})
+    int size;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workload = (Workload) Class.forName("PlaylistWorkload").getDeclaredConstructor().newInstance();
+        workload.setUp(size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        workload.tearDown();
+        workload = null;
+    }
+
+    @Benchmark
+    public long addSongThenRemove() {
+        return workload.addSongThenRemove();
+    }
+
+    @Benchmark
+    public long addSongAtThenRemove() {
+        return workload.addSongAtThenRemove();
+    }
+
+    @Benchmark
+    public long removeSongThenRestore() {
+        return workload.removeSongThenRestore();
+    }
+
+    @Benchmark
+    public long getSong() {
+        return workload.getSong();
+    }
+
+    @Benchmark
+    public long moveSongUp() {
+        return workload.moveSongUp();
+    }
+
+    @Benchmark
+    public long shuffle() {
+        return workload.shuffle();
+    }
+
+    @Benchmark
+    public long getTotalDuration() {
+        return workload.getTotalDuration();
+    }
+
+    @Benchmark
+    public long stream() {
+        return workload.stream();
+    }
+
+    @Benchmark
+    public long parallelStream() {
+        return workload.parallelStream();
+    }
+
+    @Benchmark
+    public long saveLoad() throws Exception {
+        return workload.saveLoad();
+    }
+
+    @Benchmark
+    public long modelRefresh() {
+        return workload.modelRefresh();
+    }
+}
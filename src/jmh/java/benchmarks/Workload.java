@@ -0,0 +1,48 @@
+// Workload.java
+package benchmarks;
+
+// The playlist operations PlaylistBenchmarks measures.
+//
+// Playlist and the rest of the application are in the default package,
+// which a named package cannot import, and JMH only runs benchmarks in a
+// named package. So the benchmarks reach the playlist through this
+// interface; PlaylistWorkload implements it in the default package and is
+// loaded by name once per trial. It is the only implementation, so the
+// calls are monomorphic and the JIT inlines them.
+//
+// Every method returns something derived from its result, for the caller
+// to hand to JMH so the work cannot be dropped.
+public interface Workload {
+    // Build a playlist of size songs and the inputs the operations need
+    void setUp(int size) throws Exception;
+
+    void tearDown();
+
+    // addSong of a new song, then removeSong of the last one
+    long addSongThenRemove();
+
+    // addSongAt a random position, then removeSong at that position
+    long addSongAtThenRemove();
+
+    // removeSong at a random position, then addSongAt to put the song back
+    long removeSongThenRestore();
+
+    long getSong();
+
+    long moveSongUp();
+
+    long shuffle();
+
+    long getTotalDuration();
+
+    // One pass over every song, summing durations
+    long stream();
+
+    long parallelStream();
+
+    // saveToFile followed by loadFromFile of the whole playlist
+    long saveLoad() throws Exception;
+
+    // Switch a PlaylistListModel to another playlist and read the visible rows
+    long modelRefresh();
+}